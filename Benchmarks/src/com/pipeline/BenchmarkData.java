@@ -0,0 +1,59 @@
+package com.pipeline;
+
+import java.util.Random;
+
+// Synthetic inputs with different distributions of run lengths
+final class BenchmarkData {
+    // all bytes differ from their neighbours, the worst case for RLE
+    static final String UNIQUE = "unique";
+    // one long run of the same byte
+    static final String SAME = "same";
+    // letters and spaces, short runs are rare
+    static final String TEXT = "text";
+    // runs of random length mixed with noise, like uncompressed video frames
+    static final String VIDEO = "video";
+
+    private static final long SEED = 42;
+
+    private BenchmarkData() {}
+
+    static byte[] generate(String distribution, int size) {
+        Random random = new Random(SEED);
+        byte[] data = new byte[size];
+        switch (distribution) {
+            case UNIQUE:
+                for (int i = 0; i < size; ++i) {
+                    data[i] = (byte) random.nextInt(256);
+                    if (i > 0 && data[i] == data[i - 1])
+                        data[i] = (byte) (data[i] + 1);
+                }
+                break;
+            case SAME:
+                break;
+            case TEXT:
+                String alphabet = "etaoin shrdlucmfwypvbgkjqxz      ETAOIN.,";
+                for (int i = 0; i < size; ++i)
+                    data[i] = (byte) alphabet.charAt(random.nextInt(alphabet.length()));
+                break;
+            case VIDEO:
+                int i = 0;
+                while (i < size) {
+                    int length = Integer.min(size - i, 1 + random.nextInt(64));
+                    if (random.nextInt(4) == 0) {
+                        for (int j = 0; j < length; ++j)
+                            data[i + j] = (byte) random.nextInt(256);
+                    }
+                    else {
+                        byte sym = (byte) random.nextInt(256);
+                        for (int j = 0; j < length; ++j)
+                            data[i + j] = sym;
+                    }
+                    i += length;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown distribution " + distribution);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,36 @@
+package com.pipeline;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+// Temporary configs and data files for benchmarks, workers are configured only by files
+final class BenchmarkFiles {
+    private BenchmarkFiles() {}
+
+    static String config(String... lines) throws IOException {
+        File file = File.createTempFile("benchmark_config", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(file)) {
+            for (String line : lines)
+                writer.println(line);
+        }
+        return file.getPath();
+    }
+
+    static String data(byte[] data) throws IOException {
+        File file = File.createTempFile("benchmark_data", ".bin");
+        file.deleteOnExit();
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(data);
+        }
+        return file.getPath();
+    }
+
+    static String output() throws IOException {
+        File file = File.createTempFile("benchmark_output", ".bin");
+        file.deleteOnExit();
+        return file.getPath();
+    }
+}
@@ -0,0 +1,79 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.IMediator;
+import com.java_polytech.pipeline_interfaces.TYPE;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Checksum;
+
+// Throughput of ChecksumExecutor, one operation processes DATA_SIZE bytes.
+// Time of CRC32C doesn't depend on the data, so only one distribution is used.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ChecksumExecutorBenchmark {
+    private static final int DATA_SIZE = 16 << 20;
+    private static final int PACKAGE_SIZE = 10000;
+
+    @Param({ "encode", "decode" })
+    public String mode;
+
+    @Param({ "1", "2", "4" })
+    public int threads;
+
+    private String config;
+    private byte[][] packages;
+    private PackagesProvider provider;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        config = BenchmarkFiles.config(
+                "MODE = " + mode,
+                "NUM_OF_THREADS = " + threads,
+                "MAX_PACKAGES_NUM = 64");
+        packages = PackagesProvider.split(BenchmarkData.generate(BenchmarkData.TEXT, DATA_SIZE), PACKAGE_SIZE);
+        if (mode.equals("decode")) {
+            for (int i = 0; i < packages.length; ++i)
+                packages[i] = encodeFrame(packages[i]);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        provider = new PackagesProvider(packages);
+    }
+
+    @Benchmark
+    public long process() throws InterruptedException {
+        ChecksumExecutor executor = new ChecksumExecutor();
+        RLEExecutorBenchmark.check(executor.setConfig(config));
+        RLEExecutorBenchmark.check(executor.setProvider(provider));
+        IMediator mediator = executor.getMediator(TYPE.BYTE_ARRAY);
+        BufferPool pool = BufferPool.getShared();
+
+        executor.runThreads();
+        long size = 0;
+        byte[] data;
+        while ((data = (byte[]) mediator.getData()) != null) {
+            size += data.length;
+            pool.release(data);
+        }
+        executor.joinThreads();
+        RLEExecutorBenchmark.check(executor.getRC());
+        return size;
+    }
+
+    private static byte[] encodeFrame(byte[] bytes) {
+        Checksum checksum = Crc32c.create();
+        checksum.update(bytes, 0, bytes.length);
+        byte[] frame = new byte[ChecksumFrame.HEADER_SIZE + bytes.length];
+        ChecksumFrame.writeHeader(frame, 0, bytes.length, (int) checksum.getValue());
+        System.arraycopy(bytes, 0, frame, ChecksumFrame.HEADER_SIZE, bytes.length);
+        return frame;
+    }
+}
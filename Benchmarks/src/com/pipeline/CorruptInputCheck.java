@@ -0,0 +1,241 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.IExecutor;
+import com.java_polytech.pipeline_interfaces.IMediator;
+import com.java_polytech.pipeline_interfaces.RC;
+import com.java_polytech.pipeline_interfaces.TYPE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Broken input of the decoders of RLE, LZ and checksum frames, it's run as a program and exits with 1
+// if some check fails. Every broken input must fail the decoder with its own RC in time: the decoder must not
+// hang, succeed or end with an exception caught in its thread ("Unexpected ...").
+// Input is split into packages of several sizes, so broken headers are split between packages too.
+public class CorruptInputCheck {
+    private static final int DATA_SIZE = 20000;
+    private static final int[] PACKAGE_SIZES = { 1, 7, 4096 };
+    private static final long TIMEOUT_SECONDS = 30;
+
+    // Framed format of an executor, the length of the payload is an int at lengthOffset of the header
+    private static final class Format {
+        final String name;
+        final Supplier<IExecutor> executor;
+        final String encoderConfig;
+        final String decoderConfig;
+        final int headerSize;
+        final int lengthOffset;
+
+        Format(String name, Supplier<IExecutor> executor, String encoderConfig, String decoderConfig,
+               int headerSize, int lengthOffset) {
+            this.name = name;
+            this.executor = executor;
+            this.encoderConfig = encoderConfig;
+            this.decoderConfig = decoderConfig;
+            this.headerSize = headerSize;
+            this.lengthOffset = lengthOffset;
+        }
+
+        int firstFrameSize(byte[] encoded) {
+            return headerSize + readInt(encoded, lengthOffset);
+        }
+    }
+
+    // hung decoder threads must not keep the program alive
+    private final ExecutorService runner = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int checks = 0;
+    private int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        CorruptInputCheck check = new CorruptInputCheck();
+        check.run();
+        System.out.println(check.checks + " checks, " + check.failures + " failed");
+        System.exit(check.failures > 0 ? 1 : 0);
+    }
+
+    private void run() throws Exception {
+        byte[] data = BenchmarkData.generate(BenchmarkData.TEXT, DATA_SIZE);
+        Format rle = new Format("RLE", RLEExecutor::new,
+                config("BUFFER_SIZE = 5000", "MODE = encode", "FRAMED = true"),
+                config("BUFFER_SIZE = 5000", "MODE = decode", "FRAMED = true"),
+                RLEFrame.HEADER_SIZE, 1);
+        Format lz = new Format("LZ", LZExecutor::new,
+                config("BUFFER_SIZE = 5000", "MODE = encode"),
+                config("BUFFER_SIZE = 5000", "MODE = decode"),
+                LZFrame.HEADER_SIZE, 1);
+        Format checksum = new Format("checksum", ChecksumExecutor::new,
+                config("MODE = encode"), config("MODE = decode"),
+                ChecksumFrame.HEADER_SIZE, 0);
+
+        for (Format format : new Format[] { rle, lz, checksum }) {
+            byte[] encoded = encode(format, data);
+            if (encoded == null) {
+                ++checks;
+                ++failures;
+                System.out.println("FAIL: " + format.name + " encoder failed");
+                continue;
+            }
+            checkHeaders(format, encoded);
+        }
+        checkRLE(rle, encode(rle, data));
+        checkLZ(lz, encode(lz, data));
+        checkChecksum(checksum, encode(checksum, data));
+        checkRLETokens(rle);
+    }
+
+    // Truncated frames and lengths which can't be right in any of the formats
+    private void checkHeaders(Format format, byte[] encoded) throws Exception {
+        int frameSize = format.firstFrameSize(encoded);
+        expectFailure(format, Arrays.copyOf(encoded, format.headerSize - 1), "truncated header");
+        expectFailure(format, Arrays.copyOf(encoded, frameSize + 3), "truncated header of the second frame");
+        expectFailure(format, Arrays.copyOf(encoded, frameSize - 1), "truncated payload");
+        expectFailure(format, Arrays.copyOf(encoded, encoded.length - 1), "truncated last frame");
+        expectFailure(format, withInt(encoded, format.lengthOffset, Integer.MAX_VALUE), "huge length");
+        expectFailure(format, withInt(encoded, format.lengthOffset, -1), "negative length");
+        expectFailure(format, withInt(encoded, format.lengthOffset, FrameSplitter.MAX_PACKAGE_SIZE + 1),
+                "length over the package limit");
+    }
+
+    private void checkRLE(Format format, byte[] encoded) throws Exception {
+        byte[] broken = encoded.clone();
+        broken[0] = 0x55;
+        expectFailure(format, broken, "unknown type");
+        int originalLength = RLEFrame.getOriginalLength(encoded, 0);
+        expectFailure(format, withInt(encoded, 5, originalLength + 1), "original length longer than the code");
+        expectFailure(format, withInt(encoded, 5, originalLength - 1), "original length shorter than the code");
+        expectFailure(format, withInt(encoded, 5, -1), "negative original length");
+    }
+
+    private void checkLZ(Format format, byte[] encoded) throws Exception {
+        byte[] broken = encoded.clone();
+        broken[0] = 0x55;
+        expectFailure(format, broken, "unknown type");
+        int originalLength = LZFrame.getOriginalLength(encoded, 0);
+        expectFailure(format, withInt(encoded, 5, originalLength + 1), "original length longer than the code");
+        expectFailure(format, withInt(encoded, 5, originalLength - 1), "original length shorter than the code");
+        expectFailure(format, withInt(encoded, 5, FrameSplitter.MAX_PACKAGE_SIZE + 1), "original length over the limit");
+    }
+
+    private void checkChecksum(Format format, byte[] encoded) throws Exception {
+        byte[] broken = encoded.clone();
+        ++broken[format.headerSize];
+        expectFailure(format, broken, "changed payload");
+        broken = encoded.clone();
+        ++broken[format.headerSize - 1];
+        expectFailure(format, broken, "changed checksum");
+        int length = ChecksumFrame.getLength(encoded, 0);
+        expectFailure(format, withInt(encoded, 0, length - 1), "shorter length");
+    }
+
+    // Tokens whose output is longer than the frame says or than an int can count
+    private void checkRLETokens(Format format) throws Exception {
+        // frame of 10 bytes whose varint run is 2^30 bytes long
+        byte[] frame = new byte[RLEFrame.HEADER_SIZE + 6];
+        RLEFrame.writeHeader(frame, 0, RLEFrame.TYPE_VARINT, 6, 10);
+        frame[RLEFrame.HEADER_SIZE] = (byte) 0x81;
+        Arrays.fill(frame, RLEFrame.HEADER_SIZE + 1, RLEFrame.HEADER_SIZE + 4, (byte) 0x80);
+        frame[RLEFrame.HEADER_SIZE + 4] = 0x08;
+        expectFailure(format, frame, "varint run longer than the frame");
+
+        // frame of 10 bytes with two runs of 127 bytes
+        frame = new byte[RLEFrame.HEADER_SIZE + 4];
+        RLEFrame.writeHeader(frame, 0, RLEFrame.TYPE_RLE, 4, 10);
+        frame[RLEFrame.HEADER_SIZE] = 127;
+        frame[RLEFrame.HEADER_SIZE + 2] = 127;
+        expectFailure(format, frame, "byte runs longer than the frame");
+
+        // unframed varint run of 2^31 bytes, encoder never gives a token longer than its package
+        byte[] run = { (byte) 0x81, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10, 0 };
+        Format unframed = new Format("unframed RLE", RLEExecutor::new, format.encoderConfig,
+                BenchmarkFiles.config("BUFFER_SIZE = 5000", "MODE = decode", "FORMAT = varint",
+                        "NUM_OF_THREADS = 1", "MAX_PACKAGES_NUM = 16"), 0, 0);
+        expectFailure(unframed, run, "varint run longer than int");
+    }
+
+    private void expectFailure(Format format, byte[] input, String name) throws Exception {
+        for (int packageSize : PACKAGE_SIZES)
+            expectFailure(format, input, packageSize, name);
+    }
+
+    private void expectFailure(Format format, byte[] input, int packageSize, String name) throws Exception {
+        ++checks;
+        String fullName = format.name + ", " + name + ", packages " + packageSize;
+        Future<RC> result = runner.submit(() ->
+                execute(format.executor.get(), format.decoderConfig, PackagesProvider.split(input, packageSize), null));
+        String failure = null;
+        try {
+            RC rc = result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (rc.isSuccess())
+                failure = "decoded";
+            else if (rc.info.startsWith("Unexpected"))
+                failure = rc.info;
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            failure = "hung";
+        } catch (ExecutionException e) {
+            failure = "threw " + e.getCause();
+        }
+        if (failure != null) {
+            ++failures;
+            System.out.println("FAIL: " + fullName + ", " + failure);
+        }
+    }
+
+    // Frames of data encoded in packages of 5000 bytes, null if the encoder failed
+    private static byte[] encode(Format format, byte[] data) throws InterruptedException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        RC rc = execute(format.executor.get(), format.encoderConfig, PackagesProvider.split(data, 5000), output);
+        return rc.isSuccess() ? output.toByteArray() : null;
+    }
+
+    private static RC execute(IExecutor executor, String config, byte[][] packages, ByteArrayOutputStream output)
+            throws InterruptedException {
+        RLEExecutorBenchmark.check(executor.setConfig(config));
+        RLEExecutorBenchmark.check(executor.setProvider(new PackagesProvider(packages)));
+        IMediator mediator = executor.getMediator(TYPE.BYTE_ARRAY);
+
+        executor.runThreads();
+        byte[] data;
+        while ((data = (byte[]) mediator.getData()) != null) {
+            if (output != null)
+                output.write(data, 0, data.length);
+        }
+        executor.joinThreads();
+        return executor.getRC();
+    }
+
+    private static String config(String... lines) throws IOException {
+        String[] all = Arrays.copyOf(lines, lines.length + 2);
+        all[lines.length] = "NUM_OF_THREADS = 3";
+        all[lines.length + 1] = "MAX_PACKAGES_NUM = 16";
+        return BenchmarkFiles.config(all);
+    }
+
+    private static byte[] withInt(byte[] bytes, int offset, int value) {
+        byte[] copy = bytes.clone();
+        copy[offset] = (byte) (value >>> 24);
+        copy[offset + 1] = (byte) (value >>> 16);
+        copy[offset + 2] = (byte) (value >>> 8);
+        copy[offset + 3] = (byte) value;
+        return copy;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 |
+                (bytes[offset + 1] & 0xFF) << 16 |
+                (bytes[offset + 2] & 0xFF) << 8 |
+                bytes[offset + 3] & 0xFF;
+    }
+}
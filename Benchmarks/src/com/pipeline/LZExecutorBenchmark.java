@@ -0,0 +1,87 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.IMediator;
+import com.java_polytech.pipeline_interfaces.TYPE;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Throughput of LZExecutor with all its threads and ordering of packages, one operation processes DATA_SIZE bytes.
+// The same data as in RLEExecutorBenchmark, so the two codecs can be compared.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LZExecutorBenchmark {
+    private static final int DATA_SIZE = 16 << 20;
+    private static final int PACKAGE_SIZE = 10000;
+
+    @Param({ "encode", "decode" })
+    public String mode;
+
+    @Param({ BenchmarkData.UNIQUE, BenchmarkData.SAME, BenchmarkData.TEXT, BenchmarkData.VIDEO })
+    public String distribution;
+
+    @Param({ "1", "2", "4" })
+    public int threads;
+
+    private String config;
+    private byte[][] packages;
+    private PackagesProvider provider;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        config = BenchmarkFiles.config(
+                "BUFFER_SIZE = " + PACKAGE_SIZE,
+                "MODE = " + mode,
+                "NUM_OF_THREADS = " + threads,
+                "MAX_PACKAGES_NUM = 64");
+        packages = PackagesProvider.split(BenchmarkData.generate(distribution, DATA_SIZE), PACKAGE_SIZE);
+        if (mode.equals("decode")) {
+            LZEncoder encoder = new LZEncoder();
+            for (int i = 0; i < packages.length; ++i)
+                packages[i] = encodeFrame(encoder, packages[i]);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        provider = new PackagesProvider(packages);
+    }
+
+    @Benchmark
+    public long process() throws InterruptedException {
+        LZExecutor executor = new LZExecutor();
+        RLEExecutorBenchmark.check(executor.setConfig(config));
+        RLEExecutorBenchmark.check(executor.setProvider(provider));
+        IMediator mediator = executor.getMediator(TYPE.BYTE_ARRAY);
+        BufferPool pool = BufferPool.getShared();
+
+        executor.runThreads();
+        long size = 0;
+        byte[] data;
+        while ((data = (byte[]) mediator.getData()) != null) {
+            size += data.length;
+            pool.release(data);
+        }
+        executor.joinThreads();
+        RLEExecutorBenchmark.check(executor.getRC());
+        return size;
+    }
+
+    private static byte[] encodeFrame(LZEncoder encoder, byte[] bytes) {
+        byte[] frame = new byte[LZFrame.HEADER_SIZE + LZEncoder.maxEncodedSize(bytes.length)];
+        int end = encoder.encode(bytes, bytes.length, frame, LZFrame.HEADER_SIZE);
+        if (end - LZFrame.HEADER_SIZE >= bytes.length) {
+            LZFrame.writeHeader(frame, 0, LZFrame.TYPE_RAW, bytes.length, bytes.length);
+            System.arraycopy(bytes, 0, frame, LZFrame.HEADER_SIZE, bytes.length);
+            return Arrays.copyOf(frame, LZFrame.HEADER_SIZE + bytes.length);
+        }
+        LZFrame.writeHeader(frame, 0, LZFrame.TYPE_LZ, end - LZFrame.HEADER_SIZE, bytes.length);
+        return Arrays.copyOf(frame, end);
+    }
+}
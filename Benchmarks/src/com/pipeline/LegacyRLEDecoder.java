@@ -0,0 +1,61 @@
+package com.pipeline;
+
+import java.io.ByteArrayOutputStream;
+
+// The decoder which RLEExecutor used before RLEDecoder, kept as a baseline for benchmarks
+class LegacyRLEDecoder {
+    private final ByteArrayOutputStream buffer;
+    // if the sequence of different symbols to decode is taller than current input buffer
+    private int restToDecode = 0;
+    // if there is a count of the end of input buffer and encoded symbol if next buffer
+    private int prevCount = 0;
+
+    LegacyRLEDecoder(int bufferSize) {
+        buffer = new ByteArrayOutputStream(bufferSize);
+    }
+
+    byte[] decode(byte[] bytes) {
+        buffer.reset();
+        int i = 0;
+        if (prevCount > 0) {
+            for (int j = 0; j < prevCount; ++j) {
+                buffer.write(bytes[i]);
+            }
+            ++i;
+            prevCount = 0;
+        }
+        else if (restToDecode > 0) {
+            int restInThisBuffer = Integer.min(bytes.length - i, restToDecode);
+            buffer.write(bytes, i, restInThisBuffer);
+            i += restInThisBuffer;
+            restToDecode -= restInThisBuffer;
+        }
+
+        while (i < bytes.length)  {
+            int count = bytes[i];
+            if (i + 1 == bytes.length) {
+                restToDecode = count > 0 ? 0 : -count;
+                prevCount =  Integer.max(count, 0);
+                break;
+            }
+            if (count > 0) {
+                byte sym =  bytes[i + 1];
+                for (int j = 0; j < count; ++j) {
+                    buffer.write(sym);
+                }
+                i += 2;
+            }
+            else {
+                count = -count;
+                ++i;
+                if (count > bytes.length - i) {
+                    restToDecode = count - (bytes.length - i);
+                    count = bytes.length - i;
+                }
+                buffer.write(bytes, i, count);
+                i += count;
+            }
+        }
+        return buffer.toByteArray();
+    }
+}
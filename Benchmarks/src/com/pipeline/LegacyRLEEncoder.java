@@ -0,0 +1,97 @@
+package com.pipeline;
+
+import java.io.ByteArrayOutputStream;
+
+// The encoder which RLEExecutor used before RLEEncoder, kept as a baseline for benchmarks
+class LegacyRLEEncoder {
+    private final ByteArrayOutputStream buffer;
+    private byte prevByte = 0;
+    private byte repeatingByte = 0;
+    private byte counter = 0;
+    private int startOfSingles = 0;
+
+    LegacyRLEEncoder(int bufferSize) {
+        buffer = new ByteArrayOutputStream(bufferSize);
+    }
+
+    // set counter, repeatingByte and startOfSingles values when new sequence of
+    // the same or different symbols starts
+    private int startWith(int i, byte[] bytes) {
+        if (i >= bytes.length) {
+            counter = 0;
+            return i;
+        }
+
+        if (i + 1 == bytes.length) {
+            counter = 1;
+            repeatingByte = bytes[i];
+            return i + 1;
+        }
+
+        if (bytes[i + 1] == bytes[i]) {
+            counter = 2;
+            repeatingByte = bytes[i + 1];
+        }
+        else {
+            counter = -2;
+            startOfSingles = i;
+        }
+
+        prevByte = bytes[i + 1];
+
+        return i + 2;
+    }
+
+    byte[] encode(byte[] bytes) {
+        buffer.reset();
+        int i = startWith(0, bytes);
+        for (; i < bytes.length; ++i) {
+            if (counter == Byte.MAX_VALUE) {
+                buffer.write(counter);
+                buffer.write(repeatingByte);
+                i = startWith(i, bytes);
+            }
+            if (counter == Byte.MIN_VALUE) {
+                buffer.write(counter);
+                buffer.write(bytes, startOfSingles, -counter);
+                i = startWith(i, bytes);
+            }
+
+            if (i >= bytes.length)
+                break;
+
+            if (bytes[i] == prevByte) {
+                if (counter > 0)
+                    ++counter;
+                else {
+                    buffer.write((byte) (counter + 1));
+                    buffer.write(bytes, startOfSingles, -counter - 1);
+                    counter = 2;
+                    repeatingByte = bytes[i];
+                }
+            }
+            else {
+                if (counter > 0) {
+                    buffer.write(counter);
+                    buffer.write(repeatingByte);
+                    i = startWith(i, bytes) - 1;
+                }
+                else {
+                    --counter;
+                }
+            }
+            prevByte = bytes[i];
+        }
+
+        if (counter > 0) {
+            buffer.write(counter);
+            buffer.write(repeatingByte);
+        }
+        else if (counter < 0) {
+            buffer.write(counter);
+            buffer.write(bytes, startOfSingles, -counter);
+        }
+
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,48 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.IMediator;
+import com.java_polytech.pipeline_interfaces.IProvider;
+import com.java_polytech.pipeline_interfaces.TYPE;
+
+import java.util.Arrays;
+
+// Provider which gives prepared packages in order, so a worker can be measured without the rest of pipeline
+class PackagesProvider implements IProvider, IPooledProvider {
+    private final byte[][] packages;
+    private int next = 0;
+
+    // Consumers return packages to the pool, so every run needs its own copies
+    PackagesProvider(byte[][] packages) {
+        this.packages = new byte[packages.length][];
+        for (int i = 0; i < packages.length; ++i)
+            this.packages[i] = packages[i].clone();
+    }
+
+    static byte[][] split(byte[] data, int packageSize) {
+        byte[][] packages = new byte[(data.length + packageSize - 1) / packageSize][];
+        for (int i = 0; i < packages.length; ++i) {
+            int from = i * packageSize;
+            packages[i] = Arrays.copyOfRange(data, from, Integer.min(data.length, from + packageSize));
+        }
+        return packages;
+    }
+
+    @Override
+    public TYPE[] getOutputTypes() {
+        return new TYPE[] { TYPE.BYTE_ARRAY };
+    }
+
+    @Override
+    public IMediator getMediator(TYPE type) {
+        return () -> {
+            synchronized (this) {
+                return next < packages.length ? packages[next++] : null;
+            }
+        };
+    }
+
+    // Error of consumer is seen in its getRC(), and consumer must be able to finish after it
+    @Override
+    public void reportError() {
+    }
+}
@@ -0,0 +1,62 @@
+package com.pipeline;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Whole run of Manager: Reader -> RLEExecutor (encode) -> RLEExecutor (decode) -> Writer over DATA_SIZE bytes
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class PipelineBenchmark {
+    private static final int DATA_SIZE = 64 << 20;
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    private String config;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String readerConfig = BenchmarkFiles.config(
+                "BUFFER_SIZE = 10000",
+                "QUEUE_SIZE = 30",
+                "MODE = mapped");
+        String encoderConfig = BenchmarkFiles.config(
+                "BUFFER_SIZE = 5000",
+                "MODE = encode",
+                "FRAMED = true",
+                "NUM_OF_THREADS = " + threads,
+                "MAX_PACKAGES_NUM = 64");
+        String decoderConfig = BenchmarkFiles.config(
+                "BUFFER_SIZE = 5000",
+                "MODE = decode",
+                "FRAMED = true",
+                "NUM_OF_THREADS = " + threads,
+                "MAX_PACKAGES_NUM = 64");
+        String writerConfig = BenchmarkFiles.config(
+                "BUFFER_SIZE = 10000",
+                "MODE = channel");
+        config = BenchmarkFiles.config(
+                "INPUT_FILE = " + BenchmarkFiles.data(BenchmarkData.generate(BenchmarkData.VIDEO, DATA_SIZE)),
+                "OUTPUT_FILE = " + BenchmarkFiles.output(),
+                "READER_NAME = com.pipeline.Reader",
+                "WRITER_NAME = com.pipeline.Writer",
+                "EXECUTORS_NAMES = com.pipeline.RLEExecutor, com.pipeline.RLEExecutor",
+                "READER_CONFIG = " + readerConfig,
+                "EXECUTORS_CONFIGS = " + encoderConfig + ", " + decoderConfig,
+                "WRITER_CONFIG = " + writerConfig,
+                "LOG_FILE = " + BenchmarkFiles.output());
+    }
+
+    @Benchmark
+    public void runPipeline() {
+        Manager manager = new Manager();
+        RLEExecutorBenchmark.check(manager.setConfig(config));
+        RLEExecutorBenchmark.check(manager.runPipeline());
+    }
+}
@@ -0,0 +1,55 @@
+package com.pipeline;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Compares RLEDecoder filling runs and copying literals into one presized array
+// with the previous decoder writing every byte of a run into ByteArrayOutputStream
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RLEDecoderBenchmark {
+    @Param({ BenchmarkData.UNIQUE, BenchmarkData.SAME, BenchmarkData.TEXT, BenchmarkData.VIDEO })
+    public String distribution;
+
+    @Param({ "5000", "65536" })
+    public int packageSize;
+
+    private byte[] input;
+    private PackageOutputStream output;
+    private RLEDecoder decoder;
+    private LegacyRLEDecoder legacyDecoder;
+
+    @Setup
+    public void setup() {
+        byte[] data = BenchmarkData.generate(distribution, packageSize);
+        byte[] encoded = new byte[RLEEncoder.maxEncodedSize(packageSize)];
+        input = Arrays.copyOf(encoded, RLEEncoder.encode(data, 0, data.length, encoded, 0));
+        output = new PackageOutputStream(packageSize);
+        decoder = new RLEDecoder();
+        legacyDecoder = new LegacyRLEDecoder(packageSize);
+        if (!Arrays.equals(data, legacyDecoder.decode(input)))
+            throw new IllegalStateException("Legacy decoder is broken");
+        if (!decoder.decode(input, 0, output, FrameSplitter.MAX_PACKAGE_SIZE) || !Arrays.equals(data, output.toByteArray()))
+            throw new IllegalStateException("Decoder is broken");
+    }
+
+    @Benchmark
+    public byte[] legacy() {
+        return legacyDecoder.decode(input);
+    }
+
+    @Benchmark
+    public void presized(Blackhole blackhole) {
+        output.reset();
+        decoder.decode(input, 0, output, FrameSplitter.MAX_PACKAGE_SIZE);
+        blackhole.consume(output.size());
+        blackhole.consume(output);
+    }
+}
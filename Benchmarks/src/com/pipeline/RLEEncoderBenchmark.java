@@ -0,0 +1,43 @@
+package com.pipeline;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// Compares RLEEncoder writing into a preallocated array with the previous ByteArrayOutputStream encoder
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RLEEncoderBenchmark {
+    @Param({ BenchmarkData.UNIQUE, BenchmarkData.SAME, BenchmarkData.TEXT, BenchmarkData.VIDEO })
+    public String distribution;
+
+    @Param({ "5000", "65536" })
+    public int packageSize;
+
+    private byte[] input;
+    private byte[] output;
+    private LegacyRLEEncoder legacyEncoder;
+
+    @Setup
+    public void setup() {
+        input = BenchmarkData.generate(distribution, packageSize);
+        output = new byte[RLEEncoder.maxEncodedSize(packageSize)];
+        legacyEncoder = new LegacyRLEEncoder(packageSize);
+    }
+
+    @Benchmark
+    public byte[] legacy() {
+        return legacyEncoder.encode(input);
+    }
+
+    @Benchmark
+    public void preallocated(Blackhole blackhole) {
+        blackhole.consume(RLEEncoder.encode(input, 0, input.length, output, 0));
+        blackhole.consume(output);
+    }
+}
@@ -0,0 +1,88 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.IMediator;
+import com.java_polytech.pipeline_interfaces.RC;
+import com.java_polytech.pipeline_interfaces.TYPE;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Throughput of RLEExecutor with all its threads and ordering of packages, one operation processes DATA_SIZE bytes.
+// Framed format is used, so decoder can work in several threads as well as encoder.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RLEExecutorBenchmark {
+    private static final int DATA_SIZE = 16 << 20;
+    private static final int PACKAGE_SIZE = 10000;
+
+    @Param({ "encode", "decode" })
+    public String mode;
+
+    @Param({ BenchmarkData.UNIQUE, BenchmarkData.SAME, BenchmarkData.TEXT, BenchmarkData.VIDEO })
+    public String distribution;
+
+    @Param({ "1", "2", "4" })
+    public int threads;
+
+    private String config;
+    private byte[][] packages;
+    private PackagesProvider provider;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        config = BenchmarkFiles.config(
+                "BUFFER_SIZE = " + PACKAGE_SIZE,
+                "MODE = " + mode,
+                "FRAMED = true",
+                "NUM_OF_THREADS = " + threads,
+                "MAX_PACKAGES_NUM = 64");
+        packages = PackagesProvider.split(BenchmarkData.generate(distribution, DATA_SIZE), PACKAGE_SIZE);
+        if (mode.equals("decode")) {
+            for (int i = 0; i < packages.length; ++i)
+                packages[i] = encodeFrame(packages[i]);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        provider = new PackagesProvider(packages);
+    }
+
+    @Benchmark
+    public long process() throws InterruptedException {
+        RLEExecutor executor = new RLEExecutor();
+        check(executor.setConfig(config));
+        check(executor.setProvider(provider));
+        IMediator mediator = executor.getMediator(TYPE.BYTE_ARRAY);
+        BufferPool pool = BufferPool.getShared();
+
+        executor.runThreads();
+        long size = 0;
+        byte[] data;
+        while ((data = (byte[]) mediator.getData()) != null) {
+            size += data.length;
+            pool.release(data);
+        }
+        executor.joinThreads();
+        check(executor.getRC());
+        return size;
+    }
+
+    static byte[] encodeFrame(byte[] bytes) {
+        byte[] frame = new byte[RLEFrame.HEADER_SIZE + RLEEncoder.maxEncodedSize(bytes.length)];
+        int end = RLEEncoder.encode(bytes, 0, bytes.length, frame, RLEFrame.HEADER_SIZE);
+        RLEFrame.writeHeader(frame, 0, RLEFrame.TYPE_RLE, end - RLEFrame.HEADER_SIZE, bytes.length);
+        return Arrays.copyOf(frame, end);
+    }
+
+    static void check(RC rc) {
+        if (!rc.isSuccess())
+            throw new IllegalStateException(rc.who + ": " + rc.info);
+    }
+}
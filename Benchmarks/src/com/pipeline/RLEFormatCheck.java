@@ -0,0 +1,195 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.IMediator;
+import com.java_polytech.pipeline_interfaces.TYPE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Round trips of RLEExecutor in all its formats, it's run as a program and exits with 1 if some check fails.
+// Encoded data is split into packages of other sizes for decoding, so tokens (e.g. varint headers) and frames
+// are split between packages. Byte format is also checked against the legacy encoder and decoder.
+// Unframed packages which decode to more than one package can hold are checked on long runs of zeros.
+public class RLEFormatCheck {
+    private static final int DATA_SIZE = 30000;
+    private static final int[] ENCODE_PACKAGE_SIZES = { 1000, 4093, 30000 };
+    // 1, 2 and 3 split every varint header and frame header which is longer than one byte
+    private static final int[] DECODE_PACKAGE_SIZES = { 1, 2, 3, 5, 4096 };
+    // one encoded package of long runs decodes to more than MAX_PACKAGE_SIZE
+    private static final int LONG_RUNS_SIZE = FrameSplitter.MAX_PACKAGE_SIZE + 1000;
+    private static final int LONG_RUNS_ENCODE_PACKAGE_SIZE = 1000000;
+    private static final int[] LONG_RUNS_DECODE_PACKAGE_SIZES = { 10000, 2000000 };
+
+    private int checks = 0;
+    private int failures = 0;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        RLEFormatCheck check = new RLEFormatCheck();
+        check.run();
+        System.out.println(check.checks + " checks, " + check.failures + " failed");
+        if (check.failures > 0)
+            System.exit(1);
+    }
+
+    private void run() throws IOException, InterruptedException {
+        ArrayList<byte[]> inputs = new ArrayList<>();
+        for (String distribution : new String[] { BenchmarkData.UNIQUE, BenchmarkData.SAME, BenchmarkData.TEXT, BenchmarkData.VIDEO })
+            inputs.add(BenchmarkData.generate(distribution, DATA_SIZE));
+        inputs.add(new byte[0]);
+        inputs.add(new byte[] { 7 });
+        // runs on the limits of the byte counter and a run whose varint length takes three bytes
+        for (int length : new int[] { 2, 3, 127, 128, 129, 255, 256, 20000 }) {
+            byte[] run = new byte[length + 2];
+            Arrays.fill(run, 1, length + 1, (byte) 0x55);
+            inputs.add(run);
+        }
+
+        for (byte[] input : inputs) {
+            for (int packageSize : ENCODE_PACKAGE_SIZES) {
+                byte[][] packages = PackagesProvider.split(input, packageSize);
+                for (String format : new String[] { "byte", "varint" }) {
+                    for (boolean isFramed : new boolean[] { false, true }) {
+                        // several threads of encoder must give the same output as one thread
+                        byte[] encoded = code(packages, encoderConfig(format, isFramed, 1));
+                        if (encoded == null) {
+                            expect(input, null, "encoder, " + format + (isFramed ? " framed" : ""));
+                            continue;
+                        }
+                        expect(encoded, code(packages, encoderConfig(format, isFramed, 3)),
+                                "encoder threads, " + format + (isFramed ? " framed" : ""));
+                        for (int decodeSize : DECODE_PACKAGE_SIZES) {
+                            byte[] decoded = code(PackagesProvider.split(encoded, decodeSize), decoderConfig(format, isFramed));
+                            expect(input, decoded, format + (isFramed ? " framed" : "") +
+                                    ", packages " + packageSize + " -> " + decodeSize);
+                        }
+                    }
+                }
+                checkLegacy(input, packageSize);
+            }
+        }
+        checkLongRuns();
+    }
+
+    // Output of such package is given by parts, the rest of the run is carried to the next part
+    private void checkLongRuns() throws InterruptedException, IOException {
+        byte[][] packages = PackagesProvider.split(new byte[LONG_RUNS_SIZE], LONG_RUNS_ENCODE_PACKAGE_SIZE);
+        for (String format : new String[] { "byte", "varint" }) {
+            byte[] encoded = code(packages, encoderConfig(format, false, 1));
+            if (encoded == null) {
+                expectZeros(-1, "long runs encoder, " + format);
+                continue;
+            }
+            for (int decodeSize : LONG_RUNS_DECODE_PACKAGE_SIZES) {
+                long zeros = countZeros(PackagesProvider.split(encoded, decodeSize), decoderConfig(format, false));
+                expectZeros(zeros, "long runs, " + format + ", packages " + LONG_RUNS_ENCODE_PACKAGE_SIZE + " -> " + decodeSize);
+            }
+        }
+    }
+
+    // Byte format is compatible with the legacy encoder and decoder in both directions
+    private void checkLegacy(byte[] input, int packageSize) throws IOException, InterruptedException {
+        byte[][] packages = PackagesProvider.split(input, packageSize);
+        ByteArrayOutputStream legacyEncoded = new ByteArrayOutputStream();
+        LegacyRLEEncoder legacyEncoder = new LegacyRLEEncoder(DATA_SIZE);
+        for (byte[] bytes : packages)
+            legacyEncoded.write(legacyEncoder.encode(bytes));
+        for (int decodeSize : DECODE_PACKAGE_SIZES) {
+            byte[] decoded = code(PackagesProvider.split(legacyEncoded.toByteArray(), decodeSize), decoderConfig("byte", false));
+            expect(input, decoded, "legacy encoder, packages " + packageSize + " -> " + decodeSize);
+        }
+
+        byte[] encoded = code(packages, encoderConfig("byte", false, 1));
+        if (encoded == null) {
+            expect(input, null, "encoder, packages " + packageSize);
+            return;
+        }
+        for (int decodeSize : DECODE_PACKAGE_SIZES) {
+            LegacyRLEDecoder legacyDecoder = new LegacyRLEDecoder(DATA_SIZE);
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            for (byte[] bytes : PackagesProvider.split(encoded, decodeSize))
+                decoded.write(legacyDecoder.decode(bytes));
+            expect(input, decoded.toByteArray(), "legacy decoder, packages " + packageSize + " -> " + decodeSize);
+        }
+    }
+
+    private static String encoderConfig(String format, boolean isFramed, int threads) throws IOException {
+        return BenchmarkFiles.config(
+                "BUFFER_SIZE = 5000",
+                "MODE = encode",
+                "FORMAT = " + format,
+                "FRAMED = " + isFramed,
+                "NUM_OF_THREADS = " + threads,
+                "MAX_PACKAGES_NUM = 16");
+    }
+
+    // Framed decoder knows the format from the frames, unframed one works in one thread
+    private static String decoderConfig(String format, boolean isFramed) throws IOException {
+        return BenchmarkFiles.config(
+                "BUFFER_SIZE = 5000",
+                "MODE = decode",
+                isFramed ? "FRAMED = true" : "FORMAT = " + format,
+                "NUM_OF_THREADS = " + (isFramed ? 3 : 1),
+                "MAX_PACKAGES_NUM = 16");
+    }
+
+    // Output of RLEExecutor with this config for these packages, null if the executor failed
+    private static byte[] code(byte[][] packages, String config) throws InterruptedException {
+        RLEExecutor executor = new RLEExecutor();
+        RLEExecutorBenchmark.check(executor.setConfig(config));
+        RLEExecutorBenchmark.check(executor.setProvider(new PackagesProvider(packages)));
+        IMediator mediator = executor.getMediator(TYPE.BYTE_ARRAY);
+
+        executor.runThreads();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] data;
+        while ((data = (byte[]) mediator.getData()) != null)
+            output.write(data, 0, data.length);
+        executor.joinThreads();
+        // broken output is a failed check, not the end of all checks
+        return executor.getRC().isSuccess() ? output.toByteArray() : null;
+    }
+
+    // Length of the output if it's only zeros in packages not larger than MAX_PACKAGE_SIZE, otherwise -1.
+    // The output is not stored, it's too large to keep it with the input.
+    private static long countZeros(byte[][] packages, String config) throws InterruptedException {
+        RLEExecutor executor = new RLEExecutor();
+        RLEExecutorBenchmark.check(executor.setConfig(config));
+        RLEExecutorBenchmark.check(executor.setProvider(new PackagesProvider(packages)));
+        IMediator mediator = executor.getMediator(TYPE.BYTE_ARRAY);
+
+        executor.runThreads();
+        long zeros = 0;
+        boolean isZeros = true;
+        byte[] data;
+        while ((data = (byte[]) mediator.getData()) != null) {
+            isZeros &= data.length <= FrameSplitter.MAX_PACKAGE_SIZE;
+            for (byte b : data)
+                isZeros &= b == 0;
+            zeros += data.length;
+        }
+        executor.joinThreads();
+        return executor.getRC().isSuccess() && isZeros ? zeros : -1;
+    }
+
+    private void expectZeros(long actual, String name) {
+        ++checks;
+        if (actual != LONG_RUNS_SIZE) {
+            ++failures;
+            System.out.println("FAIL: " + name + ", " + LONG_RUNS_SIZE + " zeros expected, " + actual + " got");
+        }
+    }
+
+    private void expect(byte[] expected, byte[] actual, String name) {
+        ++checks;
+        if (actual == null) {
+            ++failures;
+            System.out.println("FAIL: " + name + ", executor failed");
+        }
+        else if (!Arrays.equals(expected, actual)) {
+            ++failures;
+            System.out.println("FAIL: " + name + ", " + expected.length + " bytes expected, " + actual.length + " got");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.IMediator;
+import com.java_polytech.pipeline_interfaces.TYPE;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Time of reading a file of DATA_SIZE bytes by Reader, packages are taken by the benchmark thread
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ReaderBenchmark {
+    private static final int DATA_SIZE = 64 << 20;
+
+    @Param({ "1000", "10000", "100000" })
+    public int bufferSize;
+
+    @Param({ "stream", "mapped" })
+    public String mode;
+
+    // adaptive sizing starts with bufferSize
+    @Param({ "fixed", "adaptive" })
+    public String sizing;
+
+    private String config;
+    private String input;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        config = BenchmarkFiles.config(
+                "BUFFER_SIZE = " + bufferSize,
+                "QUEUE_SIZE = 30",
+                "MODE = " + mode,
+                sizing.equals("adaptive") ? "MIN_BUFFER_SIZE = 1000" : "",
+                sizing.equals("adaptive") ? "MAX_BUFFER_SIZE = 1000000" : "");
+        input = BenchmarkFiles.data(BenchmarkData.generate(BenchmarkData.VIDEO, DATA_SIZE));
+    }
+
+    @Benchmark
+    public long read() throws IOException, InterruptedException {
+        Reader reader = new Reader();
+        RLEExecutorBenchmark.check(reader.setConfig(config));
+        IMediator mediator = reader.getMediator(TYPE.BYTE_ARRAY);
+        BufferPool pool = BufferPool.getShared();
+
+        try (FileInputStream stream = new FileInputStream(input)) {
+            RLEExecutorBenchmark.check(reader.setInputStream(stream));
+            Thread thread = new Thread(reader, "Reader");
+            thread.start();
+            long size = 0;
+            byte[] data;
+            while ((data = (byte[]) mediator.getData()) != null) {
+                size += data.length;
+                pool.release(data);
+            }
+            thread.join();
+            RLEExecutorBenchmark.check(reader.getRC());
+            return size;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.pipeline;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Handoff of packages from the reader to the threads of an executor under contention.
+// LOCKED is how executors took packages before: the threads number packages under one lock
+// and wait in the blocking queue inside it. RING is PackageRing, where the reader numbers packages itself.
+// Packages are not processed, so only the handoff is measured.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReaderHandoffBenchmark {
+    @Param({ "LOCKED", "RING" })
+    public String handoff;
+
+    @Param({ "1", "2", "4", "8", "16", "32" })
+    public int threadsNum;
+
+    private static final int PACKAGES_NUM = 100000;
+    private static final int QUEUE_SIZE = 30;
+
+    private final byte[] data = new byte[16];
+    private ExecutorService threads;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        threads = Executors.newFixedThreadPool(threadsNum + 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        threads.shutdown();
+    }
+
+    // Time of the handoff of all packages, the sum of numbers is consumed so the takes are not removed
+    @Benchmark
+    public void handoff(Blackhole blackhole) throws InterruptedException, ExecutionException {
+        if (handoff.equals("RING"))
+            ring(blackhole);
+        else
+            locked(blackhole);
+    }
+
+    private void locked(Blackhole blackhole) throws InterruptedException, ExecutionException {
+        ArrayBlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        ReentrantLock lock = new ReentrantLock();
+        long[] nextNumber = new long[1];
+        byte[] end = new byte[0];
+
+        ArrayList<Future<?>> consumers = new ArrayList<>();
+        for (int i = 0; i < threadsNum; ++i) {
+            consumers.add(threads.submit(() -> {
+                long sum = 0;
+                while (true) {
+                    byte[] out;
+                    long number;
+                    lock.lock();
+                    try {
+                        out = queue.take();
+                        number = nextNumber[0]++;
+                        // the end stays in the queue for other threads
+                        if (out == end)
+                            queue.put(end);
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (out == end)
+                        break;
+                    sum += number;
+                }
+                blackhole.consume(sum);
+                return null;
+            }));
+        }
+        for (int i = 0; i < PACKAGES_NUM; ++i)
+            queue.put(data);
+        queue.put(end);
+        for (Future<?> consumer : consumers)
+            consumer.get();
+    }
+
+    private void ring(Blackhole blackhole) throws InterruptedException, ExecutionException {
+        PackageRing ring = new PackageRing(QUEUE_SIZE);
+
+        ArrayList<Future<?>> consumers = new ArrayList<>();
+        for (int i = 0; i < threadsNum; ++i) {
+            consumers.add(threads.submit(() -> {
+                long sum = 0;
+                PackageRing.Package numbered = ring.take();
+                while (numbered.data != null) {
+                    sum += numbered.number;
+                    numbered = ring.take();
+                }
+                blackhole.consume(sum);
+                return null;
+            }));
+        }
+        for (int i = 0; i < PACKAGES_NUM; ++i)
+            ring.put(data, () -> false);
+        ring.close();
+        for (Future<?> consumer : consumers)
+            consumer.get();
+    }
+}
@@ -0,0 +1,73 @@
+package com.pipeline;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Cost of one small encoding job: a new Manager configured from files for every job
+// against one Pipeline reused with in-memory streams
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SmallJobsBenchmark {
+    @Param({ "1000", "100000" })
+    public int payloadSize;
+
+    private String managerConfig;
+    private byte[] payload;
+    private Pipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        payload = BenchmarkData.generate(BenchmarkData.TEXT, payloadSize);
+        String readerConfig = BenchmarkFiles.config("BUFFER_SIZE = 10000", "QUEUE_SIZE = 30");
+        String encoderConfig = BenchmarkFiles.config(
+                "BUFFER_SIZE = 5000",
+                "MODE = encode",
+                "NUM_OF_THREADS = 1",
+                "MAX_PACKAGES_NUM = 64");
+        String writerConfig = BenchmarkFiles.config("BUFFER_SIZE = 10000");
+        managerConfig = BenchmarkFiles.config(
+                "INPUT_FILE = " + BenchmarkFiles.data(payload),
+                "OUTPUT_FILE = " + BenchmarkFiles.output(),
+                "READER_NAME = com.pipeline.Reader",
+                "WRITER_NAME = com.pipeline.Writer",
+                "EXECUTORS_NAMES = com.pipeline.RLEExecutor",
+                "READER_CONFIG = " + readerConfig,
+                "EXECUTORS_CONFIGS = " + encoderConfig,
+                "WRITER_CONFIG = " + writerConfig,
+                "LOG_FILE = " + BenchmarkFiles.output());
+
+        Pipeline.Builder builder = new Pipeline.Builder()
+                .setReader(new Reader(), readerConfig)
+                .addExecutor(new RLEExecutor(), encoderConfig)
+                .setWriter(new Writer(), writerConfig);
+        pipeline = builder.build();
+        RLEExecutorBenchmark.check(builder.getRC());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pipeline.close();
+    }
+
+    @Benchmark
+    public void newManager() {
+        Manager manager = new Manager();
+        RLEExecutorBenchmark.check(manager.setConfig(managerConfig));
+        RLEExecutorBenchmark.check(manager.runPipeline());
+    }
+
+    @Benchmark
+    public byte[] reusedPipeline() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(payloadSize);
+        RLEExecutorBenchmark.check(pipeline.run(new ByteArrayInputStream(payload), output));
+        return output.toByteArray();
+    }
+}
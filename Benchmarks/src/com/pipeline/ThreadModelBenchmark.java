@@ -0,0 +1,96 @@
+package com.pipeline;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Many pipelines running at once in one JVM: every worker in its own platform thread against virtual threads.
+// Virtual threads need Java 21, the VIRTUAL trial fails on older JVM.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThreadModelBenchmark {
+    @Param({ "PLATFORM", "VIRTUAL" })
+    public String threadModel;
+
+    @Param({ "1", "16", "128" })
+    public int pipelinesNum;
+
+    private static final int PAYLOAD_SIZE = 100000;
+
+    private byte[] payload;
+    private final ArrayList<Pipeline> pipelines = new ArrayList<>();
+    private ExecutorService workersPool;
+    // threads which run jobs of pipelines
+    private ExecutorService jobsPool;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        payload = BenchmarkData.generate(BenchmarkData.TEXT, PAYLOAD_SIZE);
+        String readerConfig = BenchmarkFiles.config("BUFFER_SIZE = 10000", "QUEUE_SIZE = 30");
+        String encoderConfig = BenchmarkFiles.config(
+                "BUFFER_SIZE = 5000",
+                "MODE = encode",
+                "NUM_OF_THREADS = 2",
+                "MAX_PACKAGES_NUM = 16");
+        String writerConfig = BenchmarkFiles.config("BUFFER_SIZE = 10000");
+
+        WorkerThreads workerThreads;
+        if (threadModel.equals("VIRTUAL")) {
+            workersPool = WorkerThreads.newVirtualThreadPool();
+            jobsPool = WorkerThreads.newVirtualThreadPool();
+            if (workersPool == null || jobsPool == null)
+                throw new IllegalStateException("Virtual threads need Java 21 or newer");
+            workerThreads = WorkerThreads.pooled(workersPool);
+        }
+        else {
+            jobsPool = Executors.newCachedThreadPool();
+            workerThreads = WorkerThreads.platform();
+        }
+
+        for (int i = 0; i < pipelinesNum; ++i) {
+            Pipeline.Builder builder = new Pipeline.Builder()
+                    .setWorkerThreads(workerThreads)
+                    .setReader(new Reader(), readerConfig)
+                    .addExecutor(new RLEExecutor(), encoderConfig)
+                    .setWriter(new Writer(), writerConfig);
+            pipelines.add(builder.build());
+            RLEExecutorBenchmark.check(builder.getRC());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (Pipeline pipeline : pipelines)
+            pipeline.close();
+        pipelines.clear();
+        jobsPool.shutdown();
+        if (workersPool != null)
+            workersPool.shutdown();
+    }
+
+    // Time of one job on every pipeline, all jobs run at once
+    @Benchmark
+    public void concurrentPipelines() throws InterruptedException, ExecutionException {
+        ArrayList<Future<?>> jobs = new ArrayList<>();
+        for (Pipeline pipeline : pipelines) {
+            jobs.add(jobsPool.submit(() -> {
+                ByteArrayOutputStream output = new ByteArrayOutputStream(PAYLOAD_SIZE);
+                RLEExecutorBenchmark.check(pipeline.run(new ByteArrayInputStream(payload), output));
+            }));
+        }
+        for (Future<?> job : jobs)
+            job.get();
+    }
+}
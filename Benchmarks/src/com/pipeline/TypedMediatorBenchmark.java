@@ -0,0 +1,87 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.IMediator;
+import com.java_polytech.pipeline_interfaces.IProvider;
+import com.java_polytech.pipeline_interfaces.TYPE;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Copy of a file of DATA_SIZE bytes by Reader and Writer connected by packages of one type.
+// CHAR_ARRAY and INT_ARRAY packages are converted from bytes by the reader and back by the writer,
+// odd size of reader packages splits elements between packages.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TypedMediatorBenchmark {
+    private static final int DATA_SIZE = 64 << 20;
+
+    @Param({ "BYTE_ARRAY", "CHAR_ARRAY", "INT_ARRAY" })
+    public String type;
+
+    @Param({ "10000", "10001" })
+    public int bufferSize;
+
+    private String readerConfig;
+    private String writerConfig;
+    private String input;
+    private String output;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        readerConfig = BenchmarkFiles.config(
+                "BUFFER_SIZE = " + bufferSize,
+                "QUEUE_SIZE = 30",
+                "BYTE_ORDER = LITTLE_ENDIAN");
+        writerConfig = BenchmarkFiles.config(
+                "BUFFER_SIZE = 100000",
+                "BYTE_ORDER = LITTLE_ENDIAN");
+        input = BenchmarkFiles.data(BenchmarkData.generate(BenchmarkData.VIDEO, DATA_SIZE));
+        output = BenchmarkFiles.output();
+    }
+
+    @Benchmark
+    public void copy() throws IOException, InterruptedException {
+        Reader reader = new Reader();
+        RLEExecutorBenchmark.check(reader.setConfig(readerConfig));
+        Writer writer = new Writer();
+        RLEExecutorBenchmark.check(writer.setConfig(writerConfig));
+        TYPE packagesType = TYPE.valueOf(type);
+
+        try (FileInputStream inputStream = new FileInputStream(input);
+             FileOutputStream outputStream = new FileOutputStream(output)) {
+            RLEExecutorBenchmark.check(reader.setInputStream(inputStream));
+            RLEExecutorBenchmark.check(writer.setOutputStream(outputStream));
+            // writer prefers bytes, so the reader offers it only the measured type
+            RLEExecutorBenchmark.check(writer.setProvider(new IProvider() {
+                @Override
+                public TYPE[] getOutputTypes() {
+                    return new TYPE[] { packagesType };
+                }
+
+                @Override
+                public IMediator getMediator(TYPE mediatorType) {
+                    return reader.getMediator(mediatorType);
+                }
+
+                @Override
+                public void reportError() {
+                    reader.reportError();
+                }
+            }));
+
+            Thread thread = new Thread(reader, "Reader");
+            thread.start();
+            writer.run();
+            thread.join();
+        }
+        RLEExecutorBenchmark.check(reader.getRC());
+        RLEExecutorBenchmark.check(writer.getRC());
+    }
+}
@@ -0,0 +1,56 @@
+package com.pipeline;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Time of writing DATA_SIZE bytes in packages of PACKAGE_SIZE bytes to a file by Writer
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WriterBenchmark {
+    private static final int DATA_SIZE = 64 << 20;
+    private static final int PACKAGE_SIZE = 5000;
+
+    @Param({ "1000", "10000", "100000" })
+    public int bufferSize;
+
+    @Param({ "stream", "channel" })
+    public String mode;
+
+    private String config;
+    private String output;
+    private byte[][] packages;
+    private PackagesProvider provider;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        config = BenchmarkFiles.config(
+                "BUFFER_SIZE = " + bufferSize,
+                "MODE = " + mode);
+        output = BenchmarkFiles.output();
+        packages = PackagesProvider.split(BenchmarkData.generate(BenchmarkData.VIDEO, DATA_SIZE), PACKAGE_SIZE);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        provider = new PackagesProvider(packages);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        Writer writer = new Writer();
+        RLEExecutorBenchmark.check(writer.setConfig(config));
+        RLEExecutorBenchmark.check(writer.setProvider(provider));
+        try (FileOutputStream stream = new FileOutputStream(output)) {
+            RLEExecutorBenchmark.check(writer.setOutputStream(stream));
+            writer.run();
+        }
+        RLEExecutorBenchmark.check(writer.getRC());
+    }
+}
@@ -0,0 +1,137 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.*;
+
+import java.util.zip.Checksum;
+
+// Integrity check of the data between two points of the pipeline. In encode mode CRC32C of every package
+// is computed and the package is wrapped into ChecksumFrame, in decode mode checksums of the frames are verified
+// and the packages are given out without frames. Packages are checked by NUM_OF_THREADS threads at once,
+// the first mismatch stops the whole pipeline through reportError().
+// E.g. Reader -> ChecksumExecutor(encode) -> RLEExecutor(encode) -> Writer and
+// Reader -> RLEExecutor(decode) -> ChecksumExecutor(decode) -> Writer check the decoder as well as the file.
+public class ChecksumExecutor extends ParallelExecutor {
+    private enum Mode {
+        ENCODE ("ENCODE"),
+        DECODE ("DECODE");
+        private final String str;
+
+        Mode(String str) {
+            this.str = str;
+        }
+        String toStr() {
+            return str;
+        }
+    }
+
+    // Config
+    private Mode mode;
+
+    public ChecksumExecutor() {
+        super("ChecksumExecutor");
+    }
+
+    private class ChecksumCoder implements ICoder {
+        private final Checksum checksum = Crc32c.create();
+        private byte[] result;
+
+        @Override
+        public RC run(byte[] data, long number) {
+            if (data == null)
+                return RC.RC_SUCCESS;
+            if (mode == Mode.ENCODE) {
+                RC sizeRc = FrameSplitter.checkPackageSize(data);
+                if (!sizeRc.isSuccess())
+                    return sizeRc;
+                result = encode(data);
+            }
+            else
+                result = decode(data);
+            if (result == null)
+                return new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CUSTOM_ERROR, "Checksum mismatch in package " + number);
+            return RC.RC_SUCCESS;
+        }
+
+        @Override
+        public byte[] takeResult() {
+            byte[] out = result;
+            result = null;
+            return out;
+        }
+
+        @Override
+        public void reset() {
+            pool.release(result);
+            result = null;
+        }
+
+        private byte[] encode(byte[] data) {
+            byte[] out = pool.get(ChecksumFrame.HEADER_SIZE + data.length);
+            ChecksumFrame.writeHeader(out, 0, data.length, compute(data, 0, data.length));
+            System.arraycopy(data, 0, out, ChecksumFrame.HEADER_SIZE, data.length);
+            return out;
+        }
+
+        // Returns null if the checksum doesn't match
+        private byte[] decode(byte[] data) {
+            int length = ChecksumFrame.getLength(data, 0);
+            if (compute(data, ChecksumFrame.HEADER_SIZE, length) != ChecksumFrame.getChecksum(data, 0))
+                return null;
+            byte[] out = pool.get(length);
+            System.arraycopy(data, ChecksumFrame.HEADER_SIZE, out, 0, length);
+            return out;
+        }
+
+        private int compute(byte[] bytes, int offset, int length) {
+            checksum.reset();
+            checksum.update(bytes, offset, length);
+            return (int) checksum.getValue();
+        }
+    }
+
+    @Override
+    protected ICoder newCoder() {
+        return new ChecksumCoder();
+    }
+
+    @Override
+    protected FrameSplitter newFrameSplitter(IMediator mediator, boolean isPooled) {
+        if (mode != Mode.DECODE)
+            return null;
+        return new FrameSplitter(mediator, pool, isPooled, ChecksumFrame.HEADER_SIZE,
+                (header, offset) -> ChecksumFrame.isValidHeader(header, offset) ? ChecksumFrame.getLength(header, offset) : -1,
+                "checksum frame");
+    }
+
+    @Override
+    public RC setConfig(String s) {
+        ConfigReader configReader = new ConfigReader(RC.RCWho.EXECUTOR, new ChecksumExecutorConfigGrammar());
+        RC rc = configReader.read(s);
+        if (!rc.isSuccess())
+            return rc;
+
+        for (ChecksumExecutorConfigGrammar.ConfigParams param : ChecksumExecutorConfigGrammar.ConfigParams.values()) {
+            if (!configReader.hasKey(param.toStr()))
+                return RC.RC_EXECUTOR_CONFIG_SEMANTIC_ERROR;
+        }
+
+        try {
+            numOfThreads = Integer.parseInt(configReader.getParam(ChecksumExecutorConfigGrammar.ConfigParams.NUM_OF_THREADS.toStr()));
+            maxPackagesNum = Integer.parseInt(configReader.getParam(ChecksumExecutorConfigGrammar.ConfigParams.MAX_PACKAGES_NUM.toStr()));
+        } catch (NumberFormatException e) {
+            return RC.RC_EXECUTOR_CONFIG_SEMANTIC_ERROR;
+        }
+        if (numOfThreads < 1 || maxPackagesNum < 1)
+            return RC.RC_EXECUTOR_CONFIG_SEMANTIC_ERROR;
+
+        String modeStr = configReader.getParam(ChecksumExecutorConfigGrammar.ConfigParams.MODE.toStr());
+        if (modeStr.equalsIgnoreCase(Mode.ENCODE.toStr()))
+            mode = Mode.ENCODE;
+        else if (modeStr.equalsIgnoreCase(Mode.DECODE.toStr()))
+            mode = Mode.DECODE;
+        else
+            return RC.RC_EXECUTOR_CONFIG_SEMANTIC_ERROR;
+
+        return RC.RC_SUCCESS;
+    }
+}
@@ -0,0 +1,44 @@
+package com.pipeline;
+
+// Every package passed through ChecksumExecutor in encode mode is a frame with a header
+// [package length: 4 bytes][CRC32C of the package: 4 bytes] (big-endian) followed by the package as is.
+final class ChecksumFrame {
+    static final int HEADER_SIZE = 8;
+
+    private static final int CHECKSUM_OFFSET = 4;
+
+    private ChecksumFrame() {}
+
+    static void writeHeader(byte[] frame, int offset, int length, int checksum) {
+        writeInt(frame, offset, length);
+        writeInt(frame, offset + CHECKSUM_OFFSET, checksum);
+    }
+
+    static int getLength(byte[] frame, int offset) {
+        return readInt(frame, offset);
+    }
+
+    static int getChecksum(byte[] frame, int offset) {
+        return readInt(frame, offset + CHECKSUM_OFFSET);
+    }
+
+    // Larger packages can't be framed
+    static boolean isValidHeader(byte[] frame, int offset) {
+        int length = getLength(frame, offset);
+        return length >= 0 && length <= FrameSplitter.MAX_PACKAGE_SIZE;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 |
+                (bytes[offset + 1] & 0xFF) << 16 |
+                (bytes[offset + 2] & 0xFF) << 8 |
+                bytes[offset + 3] & 0xFF;
+    }
+}
@@ -0,0 +1,85 @@
+package com.pipeline;
+
+import java.lang.reflect.Constructor;
+import java.util.zip.Checksum;
+
+// CRC32C (Castagnoli polynomial). java.util.zip.CRC32C of Java 9+ is an intrinsic which uses crc32 instructions
+// of the CPU, it's found by reflection because the project is built for Java 8.
+// On Java 8 the same checksum is computed by tables here, so checksums don't depend on the JVM.
+final class Crc32c implements Checksum {
+    // reflected polynomial 0x1EDC6F41
+    private static final int POLYNOMIAL = 0x82F63B78;
+    private static final int[][] TABLES = makeTables();
+    private static final Constructor<? extends Checksum> INTRINSIC = findIntrinsic();
+
+    private int crc = 0xFFFFFFFF;
+
+    private Crc32c() {}
+
+    // The fastest implementation for this JVM
+    static Checksum create() {
+        if (INTRINSIC != null) {
+            try {
+                return INTRINSIC.newInstance();
+            } catch (ReflectiveOperationException e) {
+                // the class was checked when it was found, so this doesn't happen
+            }
+        }
+        return new Crc32c();
+    }
+
+    private static Constructor<? extends Checksum> findIntrinsic() {
+        try {
+            Constructor<? extends Checksum> constructor =
+                    Class.forName("java.util.zip.CRC32C").asSubclass(Checksum.class).getConstructor();
+            constructor.newInstance();
+            return constructor;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    // TABLES[k][b] is CRC of the byte b followed by k zero bytes, so 4 bytes are processed at once
+    private static int[][] makeTables() {
+        int[][] tables = new int[4][256];
+        for (int b = 0; b < 256; ++b) {
+            int crc = b;
+            for (int bit = 0; bit < 8; ++bit)
+                crc = (crc >>> 1) ^ (POLYNOMIAL & -(crc & 1));
+            tables[0][b] = crc;
+        }
+        for (int b = 0; b < 256; ++b) {
+            for (int k = 1; k < 4; ++k)
+                tables[k][b] = (tables[k - 1][b] >>> 8) ^ tables[0][tables[k - 1][b] & 0xFF];
+        }
+        return tables;
+    }
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLES[0][(crc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int c = crc;
+        int end = off + len;
+        for (; off + 4 <= end; off += 4) {
+            c ^= (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+            c = TABLES[3][c & 0xFF] ^ TABLES[2][(c >>> 8) & 0xFF] ^ TABLES[1][(c >>> 16) & 0xFF] ^ TABLES[0][c >>> 24];
+        }
+        for (; off < end; ++off)
+            c = (c >>> 8) ^ TABLES[0][(c ^ b[off]) & 0xFF];
+        crc = c;
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+}
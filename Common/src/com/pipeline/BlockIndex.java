@@ -0,0 +1,179 @@
+package com.pipeline;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+// Index of the blocks (frames) of an encoded file, so a range of the original data can be decoded
+// without decoding everything before it. The encoder writes the index at the very end of the file:
+// [original offset: 8 bytes][encoded offset: 8 bytes][encoded length: 4 bytes] for every block,
+// then [size of the original data: 8 bytes][number of blocks: 4 bytes][MAGIC: 4 bytes] (big-endian).
+// Encoded offset and length are of the whole block with its header, offsets are counted from the start of the file.
+// The index is split into parts, so every part fits into a frame. Every part but the last has ENTRIES_IN_PART entries,
+// the last one has the rest of them and the trailer. Parts are payloads of frames with headers of PART_HEADER_SIZE bytes,
+// so the number of blocks in the trailer is enough to find all parts.
+public final class BlockIndex {
+    public static final int ENTRY_SIZE = 20;
+    public static final int TRAILER_SIZE = 16;
+    public static final int ENTRIES_IN_PART = (FrameSplitter.MAX_PACKAGE_SIZE - TRAILER_SIZE) / ENTRY_SIZE;
+    // the same as RLEFrame.HEADER_SIZE
+    public static final int PART_HEADER_SIZE = 9;
+    // "BLKI"
+    private static final int MAGIC = 0x424C4B49;
+
+    private long[] originalOffsets = new long[16];
+    private long[] encodedOffsets = new long[16];
+    private int[] encodedLengths = new int[16];
+    private int size = 0;
+    private long originalSize = 0;
+    private long encodedSize = 0;
+
+    // Adds the block which follows the previous ones
+    public void add(int originalLength, int encodedLength) {
+        if (size == encodedLengths.length) {
+            originalOffsets = Arrays.copyOf(originalOffsets, size * 2);
+            encodedOffsets = Arrays.copyOf(encodedOffsets, size * 2);
+            encodedLengths = Arrays.copyOf(encodedLengths, size * 2);
+        }
+        originalOffsets[size] = originalSize;
+        encodedOffsets[size] = encodedSize;
+        encodedLengths[size] = encodedLength;
+        ++size;
+        originalSize += originalLength;
+        encodedSize += encodedLength;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getOriginalSize() {
+        return originalSize;
+    }
+
+    public long getOriginalOffset(int block) {
+        return originalOffsets[block];
+    }
+
+    public long getEncodedOffset(int block) {
+        return encodedOffsets[block];
+    }
+
+    public int getEncodedLength(int block) {
+        return encodedLengths[block];
+    }
+
+    // Block which contains the byte of the original data at offset, offset must be less than getOriginalSize()
+    public int findBlock(long offset) {
+        // the last block starting not after offset, so empty blocks are skipped
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (originalOffsets[middle] <= offset)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+        return low;
+    }
+
+    public int partsNum() {
+        return partsNum(size);
+    }
+
+    // Size of the part in the file without the header of its frame
+    public int partByteSize(int part) {
+        int byteSize = entriesInPart(size, part) * ENTRY_SIZE;
+        return part == partsNum() - 1 ? byteSize + TRAILER_SIZE : byteSize;
+    }
+
+    // bytes must have partByteSize(part) bytes starting with offset
+    public void writePart(int part, byte[] bytes, int offset) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, partByteSize(part));
+        int first = part * ENTRIES_IN_PART;
+        int end = first + entriesInPart(size, part);
+        for (int i = first; i < end; ++i) {
+            buffer.putLong(originalOffsets[i]);
+            buffer.putLong(encodedOffsets[i]);
+            buffer.putInt(encodedLengths[i]);
+        }
+        if (part == partsNum() - 1) {
+            buffer.putLong(originalSize);
+            buffer.putInt(size);
+            buffer.putInt(MAGIC);
+        }
+    }
+
+    private static int partsNum(int size) {
+        return (int) Long.max(1, ((long) size + ENTRIES_IN_PART - 1) / ENTRIES_IN_PART);
+    }
+
+    private static int entriesInPart(int size, int part) {
+        return part < partsNum(size) - 1 ? ENTRIES_IN_PART : size - part * ENTRIES_IN_PART;
+    }
+
+    // Reads the index from the end of the file, returns null if the file has no index or it's broken
+    public static BlockIndex read(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < TRAILER_SIZE)
+            return null;
+        ByteBuffer trailer = readFully(channel, fileSize - TRAILER_SIZE, TRAILER_SIZE);
+        long originalSize = trailer.getLong();
+        int size = trailer.getInt();
+        if (trailer.getInt() != MAGIC || size < 0)
+            return null;
+
+        // parts are found from the end of the file, every part follows the header of its frame
+        int partsNum = partsNum(size);
+        long[] partsStarts = new long[partsNum];
+        long indexStart = fileSize - TRAILER_SIZE;
+        for (int part = partsNum - 1; part >= 0; --part) {
+            partsStarts[part] = indexStart - (long) entriesInPart(size, part) * ENTRY_SIZE;
+            indexStart = partsStarts[part] - PART_HEADER_SIZE;
+        }
+        if (indexStart < 0)
+            return null;
+
+        BlockIndex index = new BlockIndex();
+        index.originalOffsets = new long[Integer.max(1, size)];
+        index.encodedOffsets = new long[Integer.max(1, size)];
+        index.encodedLengths = new int[Integer.max(1, size)];
+        int i = 0;
+        for (int part = 0; part < partsNum; ++part) {
+            ByteBuffer entries = readFully(channel, partsStarts[part], entriesInPart(size, part) * ENTRY_SIZE);
+            while (entries.hasRemaining()) {
+                long originalOffset = entries.getLong();
+                long encodedOffset = entries.getLong();
+                int encodedLength = entries.getInt();
+                // blocks follow each other in both data
+                if (originalOffset < index.originalSize || encodedOffset != index.encodedSize || encodedLength < 0)
+                    return null;
+                index.originalOffsets[i] = originalOffset;
+                index.encodedOffsets[i] = encodedOffset;
+                index.encodedLengths[i] = encodedLength;
+                index.originalSize = originalOffset;
+                index.encodedSize += encodedLength;
+                ++i;
+            }
+        }
+        index.size = size;
+        // blocks end where the frames of the index start
+        if (originalSize < index.originalSize || index.encodedSize > indexStart)
+            return null;
+        index.originalSize = originalSize;
+        return index;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException();
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
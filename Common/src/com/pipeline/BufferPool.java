@@ -0,0 +1,157 @@
+package com.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+// Pool of package arrays shared by all workers of the pipeline.
+// Consumers get packages as arrays of exact size, so every type and size of array has its own class in the pool.
+// A class is added when its size is requested by get(), released arrays of other sizes are dropped.
+// So only sizes which repeat (packages of reader, decoded packages, buffers) are pooled, and arrays
+// whose sizes vary from package to package (e.g. outputs of encoders) are created by new and never get from the pool.
+// A package of IPooledProvider given to consumer belongs to it, and the consumer returns it to the pool
+// when it doesn't need it anymore.
+public final class BufferPool {
+    private static final int MAX_SIZE_CLASSES = 16;
+    private static final int MAX_BUFFERS_IN_CLASS = 64;
+
+    private static final BufferPool shared = new BufferPool(MAX_SIZE_CLASSES, MAX_BUFFERS_IN_CLASS);
+
+    private static final class SizeClass {
+        // class of arrays, e.g. byte[].class
+        final Class<?> type;
+        final int size;
+        final Object[] buffers;
+        int count = 0;
+        volatile long lastUse;
+
+        SizeClass(Class<?> type, int size, int capacity, long lastUse) {
+            this.type = type;
+            this.size = size;
+            this.buffers = new Object[capacity];
+            this.lastUse = lastUse;
+        }
+
+        synchronized Object poll() {
+            if (count == 0)
+                return null;
+            Object buffer = buffers[--count];
+            buffers[count] = null;
+            return buffer;
+        }
+
+        synchronized void offer(Object buffer) {
+            if (count < buffers.length)
+                buffers[count++] = buffer;
+        }
+    }
+
+    private final int buffersInClass;
+    // classes are replaced entirely, so readers can scan them without lock
+    private volatile SizeClass[] classes;
+    private final AtomicLong uses = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public BufferPool(int sizeClasses, int buffersInClass) {
+        this.classes = new SizeClass[sizeClasses];
+        this.buffersInClass = buffersInClass;
+    }
+
+    public static BufferPool getShared() {
+        return shared;
+    }
+
+    // Returns array of exactly this size, from pool if possible
+    public byte[] get(int size) {
+        return (byte[]) get(byte[].class, size, byte[]::new);
+    }
+
+    // Returns array to the pool, caller must not use it after that
+    public void release(byte[] buffer) {
+        if (buffer != null)
+            release(byte[].class, buffer, buffer.length);
+    }
+
+    public char[] getChars(int size) {
+        return (char[]) get(char[].class, size, char[]::new);
+    }
+
+    public void releaseChars(char[] buffer) {
+        if (buffer != null)
+            release(char[].class, buffer, buffer.length);
+    }
+
+    public int[] getInts(int size) {
+        return (int[]) get(int[].class, size, int[]::new);
+    }
+
+    public void releaseInts(int[] buffer) {
+        if (buffer != null)
+            release(int[].class, buffer, buffer.length);
+    }
+
+    private Object get(Class<?> type, int size, IntFunction<Object> create) {
+        if (size > 0) {
+            SizeClass sizeClass = find(type, size);
+            if (sizeClass == null)
+                sizeClass = addClass(type, size);
+            sizeClass.lastUse = uses.incrementAndGet();
+            Object buffer = sizeClass.poll();
+            if (buffer != null) {
+                hits.incrementAndGet();
+                return buffer;
+            }
+        }
+        misses.incrementAndGet();
+        return create.apply(size);
+    }
+
+    private void release(Class<?> type, Object buffer, int size) {
+        if (size == 0)
+            return;
+
+        // nobody gets arrays of this size from the pool
+        SizeClass sizeClass = find(type, size);
+        if (sizeClass != null)
+            sizeClass.offer(buffer);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private SizeClass find(Class<?> type, int size) {
+        for (SizeClass sizeClass : classes) {
+            if (sizeClass != null && sizeClass.size == size && sizeClass.type == type)
+                return sizeClass;
+        }
+        return null;
+    }
+
+    // if there is no free place, replaces the class that was not used for the longest time
+    private synchronized SizeClass addClass(Class<?> type, int size) {
+        SizeClass sizeClass = find(type, size);
+        if (sizeClass != null)
+            return sizeClass;
+
+        SizeClass[] newClasses = classes.clone();
+        int victim = 0;
+        for (int i = 0; i < newClasses.length; ++i) {
+            if (newClasses[i] == null) {
+                victim = i;
+                break;
+            }
+            if (newClasses[i].lastUse < newClasses[victim].lastUse)
+                victim = i;
+        }
+
+        sizeClass = new SizeClass(type, size, buffersInClass, uses.incrementAndGet());
+        newClasses[victim] = sizeClass;
+        classes = newClasses;
+        return sizeClass;
+    }
+}
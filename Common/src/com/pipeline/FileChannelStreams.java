@@ -0,0 +1,68 @@
+package com.pipeline;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+// Streams over file channels given to the pipeline. Reader and writer get the channel back by channelOf,
+// so their modes which work with files (MAPPED, PARALLEL, CHANNEL, ASYNC) work with such streams as with file streams.
+public final class FileChannelStreams {
+    private FileChannelStreams() {
+    }
+
+    private static final class Input extends FilterInputStream {
+        final FileChannel channel;
+
+        Input(FileChannel channel) {
+            super(Channels.newInputStream(channel));
+            this.channel = channel;
+        }
+    }
+
+    private static final class Output extends FilterOutputStream {
+        final FileChannel channel;
+
+        Output(FileChannel channel) {
+            super(Channels.newOutputStream(channel));
+            this.channel = channel;
+        }
+
+        // FilterOutputStream writes arrays byte by byte
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+    }
+
+    public static InputStream newInputStream(FileChannel channel) {
+        return new Input(channel);
+    }
+
+    public static OutputStream newOutputStream(FileChannel channel) {
+        return new Output(channel);
+    }
+
+    // Returns null if the stream is not a file
+    public static FileChannel channelOf(InputStream input) {
+        if (input instanceof FileInputStream)
+            return ((FileInputStream) input).getChannel();
+        if (input instanceof Input)
+            return ((Input) input).channel;
+        return null;
+    }
+
+    // Returns null if the stream is not a file
+    public static FileChannel channelOf(OutputStream output) {
+        if (output instanceof FileOutputStream)
+            return ((FileOutputStream) output).getChannel();
+        if (output instanceof Output)
+            return ((Output) output).channel;
+        return null;
+    }
+}
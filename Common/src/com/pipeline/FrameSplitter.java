@@ -0,0 +1,133 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.IMediator;
+import com.java_polytech.pipeline_interfaces.RC;
+
+// Cuts the stream of provider's packages into whole frames of a framed format (RLEFrame, LZFrame, ChecksumFrame).
+// Every frame is a header of the fixed size followed by the payload, and the length of the payload is in the header.
+// Provider's packages can have any size, so a frame can be split between several packages
+// or one package can contain several frames. Not thread safe, callers must synchronize.
+public final class FrameSplitter {
+    // Packages of framed formats are not larger, so a broken header can't make the decoder allocate too much
+    public static final int MAX_PACKAGE_SIZE = 1 << 26;
+
+    // Format of the header
+    public interface IHeaderReader {
+        // Length of the payload of the frame whose header starts with offset, -1 if the header is broken.
+        // The length must be bounded by the format, e.g. by the encoded size of MAX_PACKAGE_SIZE bytes.
+        int getPayloadLength(byte[] header, int offset);
+    }
+
+    private final IMediator mediator;
+    private final BufferPool pool;
+    // packages of provider are pooled, so they are returned to the pool or given away as frames
+    private final boolean isPooled;
+    private final int headerSize;
+    private final IHeaderReader headerReader;
+    // e.g. "RLE frame", it's used in messages
+    private final String frameName;
+    private byte[] current;
+    private int position = 0;
+    private RC rc = RC.RC_SUCCESS;
+    private final byte[] header;
+
+    public FrameSplitter(IMediator mediator, BufferPool pool, boolean isPooled, int headerSize,
+                         IHeaderReader headerReader, String frameName) {
+        this.mediator = mediator;
+        this.pool = pool;
+        this.isPooled = isPooled;
+        this.headerSize = headerSize;
+        this.headerReader = headerReader;
+        this.frameName = frameName;
+        header = new byte[headerSize];
+    }
+
+    // Error of the package which is larger than MAX_PACKAGE_SIZE and can't be framed, success for the others
+    public static RC checkPackageSize(byte[] data) {
+        if (data.length <= MAX_PACKAGE_SIZE)
+            return RC.RC_SUCCESS;
+        return new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CUSTOM_ERROR,
+                "Package is larger than " + MAX_PACKAGE_SIZE + " bytes, it can't be framed");
+    }
+
+    public RC getRC() {
+        return rc;
+    }
+
+    // Returns next whole frame (header and payload) or null if there is no more data or frame is broken.
+    // Frame belongs to the caller. Sizes of frames vary, so copied frames are new arrays, not pooled ones.
+    public byte[] next() {
+        if (!rc.isSuccess() || !fill())
+            return null;
+
+        // frame lies in the current package, so we don't need to gather it
+        int available = current.length - position;
+        if (available >= headerSize) {
+            long frameSize = getFrameSize(current, position);
+            if (frameSize < 0)
+                return null;
+            if (frameSize <= available) {
+                if (isPooled && position == 0 && frameSize == current.length) {
+                    // the package is given away, so it must not be returned to the pool here
+                    byte[] frame = current;
+                    current = null;
+                    return frame;
+                }
+                byte[] frame = new byte[(int) frameSize];
+                System.arraycopy(current, position, frame, 0, frame.length);
+                position += frame.length;
+                return frame;
+            }
+        }
+
+        if (!read(header, 0, header.length))
+            return null;
+        long frameSize = getFrameSize(header, 0);
+        if (frameSize < 0)
+            return null;
+
+        byte[] frame = new byte[(int) frameSize];
+        System.arraycopy(header, 0, frame, 0, header.length);
+        if (!read(frame, header.length, frame.length - header.length))
+            return null;
+        return frame;
+    }
+
+    // Size of the frame with the header, -1 if the header is broken
+    private long getFrameSize(byte[] bytes, int offset) {
+        int payloadLength = headerReader.getPayloadLength(bytes, offset);
+        if (payloadLength < 0) {
+            rc = new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CUSTOM_ERROR, "Invalid " + frameName + " header");
+            return -1;
+        }
+        return headerSize + (long) payloadLength;
+    }
+
+    // get next package from provider if the current one is over
+    private boolean fill() {
+        while (current == null || position == current.length) {
+            if (isPooled)
+                pool.release(current);
+            current = (byte[]) mediator.getData();
+            position = 0;
+            if (current == null)
+                return false;
+        }
+        return true;
+    }
+
+    private boolean read(byte[] dst, int offset, int length) {
+        while (length > 0) {
+            if (!fill()) {
+                rc = new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CUSTOM_ERROR, "Truncated " + frameName);
+                return false;
+            }
+            int count = Integer.min(length, current.length - position);
+            System.arraycopy(current, position, dst, offset, count);
+            position += count;
+            offset += count;
+            length -= count;
+        }
+        return true;
+    }
+}
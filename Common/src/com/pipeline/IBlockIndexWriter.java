@@ -0,0 +1,8 @@
+package com.pipeline;
+
+// Executor which writes BlockIndex after its output. Offsets of the index are offsets in the output of the executor,
+// so they are offsets in the file only if no executor changes the data after it.
+public interface IBlockIndexWriter {
+    // Returns false if the executor doesn't write the index with its config
+    boolean writesBlockIndex();
+}
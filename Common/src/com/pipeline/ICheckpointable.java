@@ -0,0 +1,15 @@
+package com.pipeline;
+
+// Worker whose job can be resumed from a checkpoint
+public interface ICheckpointable {
+    StageCheckpoints getCheckpoints();
+
+    // Sets the state saved in the checkpoint for the next job, null if the stage had no state.
+    // Returns false if the worker can't continue from this state.
+    boolean restoreState(String state);
+
+    // Returns false if the worker can't make checkpoints with its config, it's checked before the first job
+    default boolean canCheckpoint() {
+        return true;
+    }
+}
@@ -0,0 +1,6 @@
+package com.pipeline;
+
+// Worker which adapts its work to the metrics of its consumer, pipeline gives them if the consumer collects them
+public interface IConsumerMetricsAware {
+    void setConsumerMetrics(StageMetrics consumerMetrics);
+}
@@ -0,0 +1,6 @@
+package com.pipeline;
+
+// Worker which collects metrics of its work
+public interface IMetricsSource {
+    StageMetrics getMetrics();
+}
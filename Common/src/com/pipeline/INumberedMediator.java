@@ -0,0 +1,8 @@
+package com.pipeline;
+
+// Mediator which gives packages with their numbers, so threads of the consumer don't need a lock
+// to take packages and remember their order
+public interface INumberedMediator {
+    // Never returns null, data of the package is null at the end of data. Every call gets its own number.
+    PackageRing.Package getNumbered();
+}
@@ -0,0 +1,7 @@
+package com.pipeline;
+
+// Provider whose packages are taken from BufferPool and belong to the consumer, so it returns them to the pool.
+// Packages of other providers (e.g. executors of other authors) may be used by them after they are given,
+// so consumer must not return them to the pool.
+public interface IPooledProvider {
+}
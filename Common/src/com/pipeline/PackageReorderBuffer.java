@@ -0,0 +1,147 @@
+package com.pipeline;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded ring of packages indexed by their sequence number.
+// Workers put packages in any order, consumer takes them strictly in order.
+// A worker whose package is too far ahead of the consumer blocks until a slot is freed,
+// but the package the consumer is waiting for always fits, so there is no deadlock.
+// A package may be put by several parts, a slot keeps one part and the next part waits until it's taken.
+public class PackageReorderBuffer {
+    private final byte[][] slots;
+    // the part in the slot is not the last one of its package
+    private final boolean[] isPartial;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition packageReady = lock.newCondition();
+    private final Condition slotFreed = lock.newCondition();
+
+    private long nextOut = 0;
+    // number of the first package after the end of data
+    private long endNumber = Long.MAX_VALUE;
+    private boolean isAborted = false;
+    // number of packages in slots
+    private int size = 0;
+
+    public PackageReorderBuffer(int capacity) {
+        slots = new byte[capacity][];
+        isPartial = new boolean[capacity];
+    }
+
+    private int index(long number) {
+        return (int) (number % slots.length);
+    }
+
+    // Blocks while the package does not fit into the window of the ring
+    public void put(long number, byte[] data) throws InterruptedException {
+        put(number, data, true);
+    }
+
+    // Blocks also while the previous part of the package is in the slot
+    public void put(long number, byte[] data, boolean isLast) throws InterruptedException {
+        lock.lock();
+        try {
+            while ((number - nextOut >= slots.length || slots[index(number)] != null) && !isAborted && number < endNumber)
+                slotFreed.await();
+            if (isAborted || number >= endNumber)
+                return;
+
+            slots[index(number)] = data;
+            isPartial[index(number)] = !isLast;
+            ++size;
+            if (number == nextOut)
+                packageReady.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Blocks until the package fits into the window, so put of it won't block.
+    // Returns false if the package is not needed anymore.
+    public boolean awaitSlot(long number) throws InterruptedException {
+        lock.lock();
+        try {
+            while (number - nextOut >= slots.length && !isAborted && number < endNumber)
+                slotFreed.await();
+            return !isAborted && number < endNumber;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Marks that there are no packages with this number and after it.
+    // Several threads can finish, the least number wins.
+    public void finish(long number) {
+        lock.lock();
+        try {
+            if (number < endNumber) {
+                endNumber = number;
+                packageReady.signalAll();
+                slotFreed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Consumer won't take packages anymore
+    public void abort() {
+        lock.lock();
+        try {
+            isAborted = true;
+            packageReady.signalAll();
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Number of packages given to consumer including empty ones, a package is given with its last part
+    public long getTakenNumber() {
+        lock.lock();
+        try {
+            return nextOut;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns next package or null if there are no more packages
+    public byte[] take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                if (isAborted || nextOut >= endNumber)
+                    return null;
+
+                int i = index(nextOut);
+                byte[] out = slots[i];
+                if (out == null) {
+                    packageReady.await();
+                    continue;
+                }
+
+                slots[i] = null;
+                --size;
+                // the next part of the package is put into the same slot
+                if (!isPartial[i])
+                    ++nextOut;
+                slotFreed.signalAll();
+                // empty result (e.g. decoded package that contains only a counter) is not the end of data
+                if (out.length > 0)
+                    return out;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
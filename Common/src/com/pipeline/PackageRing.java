@@ -0,0 +1,208 @@
+package com.pipeline;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+// Bounded lock-free queue of packages for several producers and several consumers (ring of D. Vyukov).
+// Every slot has a sequence: the slot is free for the package number pos if sequence == pos,
+// and it contains the package pos if sequence == pos + 1. Position of a package in the ring is its number,
+// so consumers get packages numbered in the order of puts without any lock.
+// Producer claims a position by CAS only when its slot is free, consumer claims a position by CAS only
+// when its package is in the slot, so ready packages are taken by any running consumer without a lock.
+// Only one consumer waits for the empty ring at a time (it spins, then yields, then blocks on a condition),
+// the others wait for takeLock, so waiting threads don't take the processor from the producer.
+// Producers waiting for the full ring do the same with putLock. The other side takes the lock to signal
+// only when a thread is blocked on its condition.
+public final class PackageRing {
+    // Package with its number, data is null at the end of packages
+    public static final class Package {
+        public final long number;
+        public final byte[] data;
+
+        Package(long number, byte[] data) {
+            this.number = number;
+            this.data = data;
+        }
+    }
+
+    // spinning only takes the time from the thread which is waited for if there is one processor
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 64 : 0;
+    private static final int YIELDS = 8;
+
+    // counters of producers and consumers are changed by different threads,
+    // so they are 128 bytes apart and don't share a cache line with each other or other data
+    private static final int PUT = 15;
+    private static final int TAKE = 31;
+    private final AtomicLongArray counters = new AtomicLongArray(47);
+
+    private final AtomicLongArray sequences;
+    private final byte[][] slots;
+    private final int mask;
+    // number of the first position after the packages, it's known when producers close the ring
+    private volatile long end = Long.MAX_VALUE;
+
+    // slow path of waiting, counters of blocked threads are changed under the locks and read without them.
+    // Await releases the lock, so the next waiting thread can block too.
+    private final ReentrantLock takeLock = new ReentrantLock();
+    private final Condition notEmpty = takeLock.newCondition();
+    private volatile int blockedTakers = 0;
+    private final ReentrantLock putLock = new ReentrantLock();
+    private final Condition notFull = putLock.newCondition();
+    private volatile int blockedPutters = 0;
+
+    // Capacity is rounded up to a power of two
+    public PackageRing(int capacity) {
+        int size = Integer.highestOneBit(Integer.max(1, capacity - 1)) << 1;
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; ++i)
+            sequences.set(i, i);
+        slots = new byte[size][];
+        mask = size - 1;
+    }
+
+    // Waits for a free slot while isCancelled returns false. Returns false if the put is cancelled.
+    // Blocked producer sees the cancel after wakeUpAll().
+    public boolean put(byte[] data, BooleanSupplier isCancelled) throws InterruptedException {
+        if (tryPut(data))
+            return true;
+        putLock.lockInterruptibly();
+        try {
+            int waits = 0;
+            while (!tryPut(data)) {
+                if (isCancelled.getAsBoolean())
+                    return false;
+                if (waits++ < SPINS + YIELDS) {
+                    if (waits > SPINS)
+                        Thread.yield();
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
+                    continue;
+                }
+                ++blockedPutters;
+                try {
+                    while (isFull() && !isCancelled.getAsBoolean())
+                        notFull.await();
+                } finally {
+                    --blockedPutters;
+                }
+            }
+            return true;
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    // There will be no more packages, must be called after the last put
+    public void close() {
+        end = counters.get(PUT);
+        wakeUpAll();
+    }
+
+    // Wakes up all blocked threads, e.g. when isCancelled of the waiting put becomes true
+    public void wakeUpAll() {
+        signal(takeLock, notEmpty);
+        signal(putLock, notFull);
+    }
+
+    // Never returns null, every call gets its own number even at the end.
+    // Interrupted thread gets the end, its interrupted status is kept.
+    public Package take() {
+        Package numbered = tryTake();
+        if (numbered != null)
+            return numbered;
+        takeLock.lock();
+        try {
+            int waits = 0;
+            while ((numbered = tryTake()) == null) {
+                if (Thread.currentThread().isInterrupted())
+                    return new Package(counters.getAndIncrement(TAKE), null);
+                if (waits++ < SPINS + YIELDS) {
+                    if (waits > SPINS)
+                        Thread.yield();
+                    continue;
+                }
+                ++blockedTakers;
+                try {
+                    while (isEmpty())
+                        notEmpty.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    --blockedTakers;
+                }
+            }
+            return numbered;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    // Packages which are put and not taken yet
+    public int size() {
+        return (int) Long.max(0, counters.get(PUT) - counters.get(TAKE));
+    }
+
+    // Returns false if the ring is full
+    private boolean tryPut(byte[] data) {
+        while (true) {
+            long position = counters.get(PUT);
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference < 0)
+                return false;
+            if (difference == 0 && counters.compareAndSet(PUT, position, position + 1)) {
+                slots[index] = data;
+                sequences.set(index, position + 1);
+                if (blockedTakers > 0)
+                    signal(takeLock, notEmpty);
+                return true;
+            }
+        }
+    }
+
+    // Returns null if the ring is empty, positions after the end are taken as the end
+    private Package tryTake() {
+        while (true) {
+            long position = counters.get(TAKE);
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference < 0) {
+                if (position < end)
+                    return null;
+                return new Package(counters.getAndIncrement(TAKE), null);
+            }
+            if (difference == 0 && counters.compareAndSet(TAKE, position, position + 1)) {
+                byte[] data = slots[index];
+                slots[index] = null;
+                sequences.set(index, position + mask + 1);
+                if (blockedPutters > 0)
+                    signal(putLock, notFull);
+                return new Package(position, data);
+            }
+        }
+    }
+
+    // Blocked thread is counted before it checks the ring under the lock, and the other side changes
+    // the slot before it reads the counter and takes the lock to signal. So the signal comes when the thread
+    // already waits, or the check sees the change.
+    private boolean isEmpty() {
+        long position = counters.get(TAKE);
+        return sequences.get((int) position & mask) - (position + 1) < 0 && position < end;
+    }
+
+    private boolean isFull() {
+        long position = counters.get(PUT);
+        return sequences.get((int) position & mask) - position < 0;
+    }
+
+    private static void signal(ReentrantLock lock, Condition condition) {
+        lock.lock();
+        try {
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Executor which codes packages of BYTE_ARRAY in NUM_OF_THREADS threads at once (or in tasks of the shared pool)
+// and gives them to consumer in the order of input. Subclasses give the coder of packages
+// and the frame splitter if their input is framed, the threads, the order and checkpoints are kept here.
+public abstract class ParallelExecutor implements IExecutor, IMetricsSource, ICheckpointable, IPooledProvider {
+    final private TYPE[] supportedTypes = { TYPE.BYTE_ARRAY };
+
+    // Codes packages of one thread, so it doesn't need to be thread safe
+    protected interface ICoder {
+        // Codes the package with its number, null data means the end of input.
+        // The coded package is taken by takeResult() if the package is coded successfully.
+        RC run(byte[] data, long number);
+
+        byte[] takeResult();
+
+        // Output of one package may be too large for one array (e.g. decoded long runs), then it's given by parts:
+        // after takeResult() the rest of the package is coded by runMore() while hasMoreResults() is true.
+        // Only coders with state between packages may have parts, they are never split into tasks.
+        default boolean hasMoreResults() {
+            return false;
+        }
+
+        default RC runMore() {
+            return RC.RC_SUCCESS;
+        }
+
+        // Drops the output of the package which failed
+        default void reset() {
+        }
+
+        // State which is carried to the next package, null if the coder has no such state
+        default String saveState() {
+            return null;
+        }
+
+        // Throws IllegalArgumentException if the coder can't have this state
+        default void restoreState(String state) {
+            throw new IllegalArgumentException("Coder has no state");
+        }
+    }
+
+    // e.g. "RLEExecutor", it's the name of metrics and threads
+    private final String name;
+    // Config
+    protected int numOfThreads;
+    protected int maxPackagesNum;
+
+    private IProvider provider;
+    private IMediator mediator;
+    private FrameSplitter frameSplitter;
+    // input packages belong to this executor, so they are returned to the pool when they are coded
+    private boolean isInputOwned;
+    // provider which numbers packages itself, so threads take them without providerLock
+    private INumberedMediator numberedMediator;
+    private final ArrayList<WorkerThreads.Worker> executorsThreads = new ArrayList<>();
+    protected final BufferPool pool = BufferPool.getShared();
+
+    // Error in this executor or in consumer
+    protected RC rc = RC.RC_SUCCESS;
+    protected boolean isConsumerError;
+
+    // to save right order of packages
+    private PackageReorderBuffer packages;
+    private long inputPackageNumber = 0;
+    // getData of provider blocks, and a virtual thread blocked in synchronized block can't leave its carrier thread
+    private final ReentrantLock providerLock = new ReentrantLock();
+    private final StageMetrics metrics;
+
+    // Checkpoints map offsets of output to offsets of input at the ends of packages
+    private final StageCheckpoints checkpoints = new StageCheckpoints(false);
+    // coder state from the checkpoint, it's given to the first coder of the next job
+    private String restoredState;
+    // threads remember input lengths of packages, both offsets are counted by consumer in the order of packages
+    private long inputOffset = 0;
+    private long outputOffset = 0;
+    private long countedPackages = 0;
+    private final ConcurrentHashMap<Long, Integer> packagesInputLengths = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, String> packagesStates = new ConcurrentHashMap<>();
+
+    protected ParallelExecutor(String name) {
+        this.name = name;
+        metrics = new StageMetrics(name);
+    }
+
+    // New coder for a thread or a task
+    protected abstract ICoder newCoder();
+
+    // Splitter of provider's packages into frames, null if the packages are coded as they are.
+    // isPooled is true if the packages of provider can be returned to the pool.
+    protected FrameSplitter newFrameSplitter(IMediator mediator, boolean isPooled) {
+        return null;
+    }
+
+    // Coder which keeps state between packages must get them one after another in one thread
+    protected boolean hasStateBetweenPackages() {
+        return false;
+    }
+
+    // Called for a new job before its threads start
+    protected void startJob() {
+    }
+
+    // Called by consumer for every package in order and for the end of data (null).
+    // Returns what consumer gets instead, e.g. the executor can add a package after the last one.
+    protected byte[] toConsumer(byte[] out) {
+        return out;
+    }
+
+    private class ParallelExecutorRunnable implements Runnable {
+        private final ICoder coder = newCoder();
+
+        ParallelExecutorRunnable() {
+            if (restoredState != null) {
+                coder.restoreState(restoredState);
+                restoredState = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            byte[] data;
+            long thisPackageNumber;
+            do {
+                long start = System.nanoTime();
+                if (numberedMediator != null) {
+                    // provider enumerates packages itself, every call gets its own number
+                    PackageRing.Package numbered = numberedMediator.getNumbered();
+                    data = numbered.data;
+                    thisPackageNumber = numbered.number;
+                }
+                else {
+                    providerLock.lock(); // all executors have the same provider
+                    // Executors need to save the order of packages, so they enumerate all input packages
+                    // Certainly, it must be an atomic operation (all executors must have different numbers)
+                    thisPackageNumber = inputPackageNumber;
+                    // We don't need to process overflows because rang of long always is mush more than
+                    // current number of processing packages
+                    ++inputPackageNumber;
+                    try {
+                        data = getData();
+                    } catch (Throwable e) {
+                        fail(thisPackageNumber, e);
+                        return;
+                    } finally {
+                        providerLock.unlock();
+                    }
+                }
+                countInput(thisPackageNumber, data);
+                if (data != null)
+                    metrics.addInput(data.length, System.nanoTime() - start);
+            } while (process(thisPackageNumber, data));
+        }
+
+        // Broken input must fail the job, consumer waiting for the package must get the end.
+        // Errors (e.g. OutOfMemoryError) are caught too, a thread which dies without finish() hangs the job.
+        private void fail(long thisPackageNumber, Throwable e) {
+            if (rc.isSuccess())
+                rc = new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CUSTOM_ERROR, "Unexpected " + e);
+            try {
+                provider.reportError();
+            } finally {
+                packages.finish(thisPackageNumber);
+            }
+        }
+
+        // Codes the package and gives it to the consumer, null data means the end of input.
+        // Returns false if there will be no more packages.
+        boolean process(long thisPackageNumber, byte[] data) {
+            try {
+                return tryProcess(thisPackageNumber, data);
+            } catch (Throwable e) {
+                fail(thisPackageNumber, e);
+                coder.reset();
+                return false;
+            }
+        }
+
+        private boolean tryProcess(long thisPackageNumber, byte[] data) {
+            long start = System.nanoTime();
+            RC coderRc = data == null && frameSplitter != null ? frameSplitter.getRC() : coder.run(data, thisPackageNumber);
+            if (!checkCoder(thisPackageNumber, coderRc))
+                return false;
+
+            if (data == null) {
+                packages.finish(thisPackageNumber);
+                return false;
+            }
+
+            // When file is very big and writer works slowly (e.g. because of small buffer)
+            // executor can accumulate too many packages, and it causes out of memory,
+            // so the thread waits until the consumer frees a place for this package
+            byte[] result = coder.takeResult();
+            while (coder.hasMoreResults()) {
+                if (!put(thisPackageNumber, result, false) || !checkCoder(thisPackageNumber, coder.runMore()))
+                    return false;
+                result = coder.takeResult();
+            }
+            // state is saved when the whole package is coded
+            if (checkpoints.isEnabled()) {
+                String state = coder.saveState();
+                if (state != null)
+                    packagesStates.put(thisPackageNumber, state);
+            }
+            // input package is processed and not needed anymore
+            if (isInputOwned)
+                pool.release(data);
+            metrics.addLatency(System.nanoTime() - start);
+            return put(thisPackageNumber, result, true);
+        }
+
+        // Returns false if the package must not be given to consumer because of an error
+        private boolean checkCoder(long thisPackageNumber, RC coderRc) {
+            if (!coderRc.isSuccess()) {
+                // input stops after an error of another thread, the first error is the reason
+                if (rc.isSuccess())
+                    rc = coderRc;
+            }
+            if (!rc.isSuccess() || isConsumerError) {
+                provider.reportError();
+                packages.finish(thisPackageNumber);
+                return false;
+            }
+            return true;
+        }
+
+        private boolean put(long thisPackageNumber, byte[] result, boolean isLast) {
+            long putStart = System.nanoTime();
+            try {
+                packages.put(thisPackageNumber, result, isLast);
+                metrics.addOutput(result.length, System.nanoTime() - putStart);
+                metrics.addQueueSize(packages.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rc = new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CUSTOM_ERROR, "Packages buffer exception");
+                provider.reportError();
+                packages.finish(thisPackageNumber);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    // Reads packages in one thread and codes them in tasks of the shared pool,
+    // so packages of all executors of the chain are coded by the same threads.
+    // Slot in packages is reserved before the task starts, so tasks never block.
+    private class ParallelExecutorFeeder implements Runnable {
+        private final ForkJoinPool taskPool;
+        // coders which are not used by tasks now
+        private final ConcurrentLinkedQueue<ParallelExecutorRunnable> coders = new ConcurrentLinkedQueue<>();
+        private final ArrayDeque<ForkJoinTask<?>> tasks = new ArrayDeque<>();
+
+        ParallelExecutorFeeder(ForkJoinPool taskPool) {
+            this.taskPool = taskPool;
+        }
+
+        @Override
+        public void run() {
+            ParallelExecutorRunnable feederCoder = new ParallelExecutorRunnable();
+            // such coder can't be split into tasks
+            if (hasStateBetweenPackages()) {
+                feederCoder.run();
+                return;
+            }
+
+            while (true) {
+                long thisPackageNumber = inputPackageNumber;
+                try {
+                    long start = System.nanoTime();
+                    boolean isNeeded = packages.awaitSlot(thisPackageNumber);
+                    metrics.addConsumerWait(System.nanoTime() - start);
+                    if (!isNeeded) {
+                        feederCoder.process(thisPackageNumber, null);
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    rc = new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CUSTOM_ERROR, "Packages buffer exception");
+                    feederCoder.process(thisPackageNumber, null);
+                    break;
+                }
+
+                byte[] data;
+                long start = System.nanoTime();
+                providerLock.lock();
+                try {
+                    data = getData();
+                    ++inputPackageNumber;
+                } catch (Throwable e) {
+                    feederCoder.fail(thisPackageNumber, e);
+                    break;
+                } finally {
+                    providerLock.unlock();
+                }
+                countInput(thisPackageNumber, data);
+                if (data != null)
+                    metrics.addInput(data.length, System.nanoTime() - start);
+                if (data == null || !rc.isSuccess() || isConsumerError) {
+                    if (isInputOwned)
+                        pool.release(data);
+                    feederCoder.process(thisPackageNumber, null);
+                    break;
+                }
+
+                while (!tasks.isEmpty() && tasks.peekFirst().isDone())
+                    tasks.pollFirst();
+                tasks.addLast(taskPool.submit(() -> {
+                    ParallelExecutorRunnable coder = coders.poll();
+                    if (coder == null)
+                        coder = new ParallelExecutorRunnable();
+                    coder.process(thisPackageNumber, data);
+                    coders.offer(coder);
+                }));
+            }
+
+            // the executor is finished when all its packages are coded
+            for (ForkJoinTask<?> task : tasks)
+                task.quietlyJoin();
+        }
+    }
+
+    // Called under providerLock
+    private byte[] getData() {
+        return frameSplitter != null ? frameSplitter.next() : (byte[]) mediator.getData();
+    }
+
+    private void countInput(long number, byte[] data) {
+        if (data != null && checkpoints.isEnabled())
+            packagesInputLengths.put(number, data.length);
+    }
+
+    // Called by consumer, so output packages are counted in their order.
+    // Empty packages are not given to consumer, but they are counted with the next one.
+    private void countOutput(byte[] out) {
+        long taken = packages.getTakenNumber();
+        boolean isCounted = false;
+        String state = null;
+        for (; countedPackages < taken; ++countedPackages) {
+            Integer length = packagesInputLengths.remove(countedPackages);
+            if (length != null) {
+                inputOffset += length;
+                isCounted = true;
+            }
+            state = packagesStates.remove(countedPackages);
+        }
+        outputOffset += out.length;
+        if (isCounted)
+            checkpoints.record(outputOffset, inputOffset, state);
+    }
+
+    @Override
+    public StageCheckpoints getCheckpoints() {
+        return checkpoints;
+    }
+
+    // Packages are coded independently unless the coder has a state
+    @Override
+    public boolean restoreState(String state) {
+        restoredState = null;
+        if (state == null)
+            return true;
+        try {
+            // check the state by the coder which is not used
+            newCoder().restoreState(state);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        restoredState = state;
+        return true;
+    }
+
+    @Override
+    public RC setProvider(IProvider iProvider) {
+        // new provider starts a new job, so the executor can be used again
+        provider = iProvider;
+        rc = RC.RC_SUCCESS;
+        isConsumerError = false;
+        inputPackageNumber = 0;
+        packages = new PackageReorderBuffer(maxPackagesNum);
+        inputOffset = 0;
+        outputOffset = 0;
+        countedPackages = 0;
+        packagesInputLengths.clear();
+        packagesStates.clear();
+        executorsThreads.clear();
+        startJob();
+        boolean isEmptyIntersect = true;
+        TYPE intersectType = null;
+        outerLoop: for (TYPE myType : supportedTypes) {
+            for (TYPE providerType : iProvider.getOutputTypes()) {
+                if (myType == providerType) {
+                    intersectType = myType;
+                    isEmptyIntersect = false;
+                    break outerLoop;
+                }
+            }
+        }
+        if (isEmptyIntersect)
+            return RC.RC_EXECUTOR_TYPES_INTERSECTION_EMPTY_ERROR;
+
+        mediator = iProvider.getMediator(intersectType);
+        boolean isPooled = iProvider instanceof IPooledProvider;
+        frameSplitter = newFrameSplitter(mediator, isPooled);
+        // frames are copies or pooled packages themselves, so they always belong to the executor
+        isInputOwned = isPooled || frameSplitter != null;
+        // frames are split from packages one after another, so framed input needs the lock anyway
+        numberedMediator = frameSplitter == null && mediator instanceof INumberedMediator ?
+                (INumberedMediator) mediator : null;
+        return RC.RC_SUCCESS;
+    }
+
+    @Override
+    public TYPE[] getOutputTypes() {
+        return supportedTypes;
+    }
+
+    @Override
+    public IMediator getMediator(TYPE type) {
+        if (type == TYPE.BYTE_ARRAY) {
+            return () -> {
+                try {
+                    byte[] out = packages.take();
+                    if (out != null && checkpoints.isEnabled())
+                        countOutput(out);
+                    return toConsumer(out);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    rc = new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CUSTOM_ERROR, "Packages buffer exception");
+                    return null;
+                }
+            };
+        }
+        else
+            return null;
+    }
+
+    @Override
+    public void runThreads() {
+        // threads are given by the pipeline which runs this executor
+        WorkerThreads threads = WorkerThreads.current();
+        if (threads.getTaskPool() != null) {
+            executorsThreads.add(threads.start(new ParallelExecutorFeeder(threads.getTaskPool()), name + "/Feeder"));
+            return;
+        }
+        for (int i = 0; i < numOfThreads; ++i)
+            executorsThreads.add(threads.start(new ParallelExecutorRunnable(), name + "/Thread" + i));
+    }
+
+    @Override
+    public void joinThreads() throws InterruptedException {
+        for (WorkerThreads.Worker executorThread : executorsThreads) {
+            executorThread.join();
+        }
+    }
+
+    @Override
+    public RC getRC() {
+        return rc;
+    }
+
+    @Override
+    public StageMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void reportError() {
+        isConsumerError = true;
+        packages.abort();
+    }
+}
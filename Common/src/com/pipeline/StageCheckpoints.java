@@ -0,0 +1,77 @@
+package com.pipeline;
+
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongPredicate;
+
+// Points of the stage output where the job can be restarted: offset in the output of the stage,
+// offset in its input which gave this output and the state of the stage at this point.
+// Offsets are counted from the start of the current job.
+public final class StageCheckpoints {
+    public static final class Point {
+        public final long input;
+        public final String state;
+
+        Point(long input, String state) {
+            this.input = input;
+            this.state = state;
+        }
+    }
+
+    // output of the stage is the same as its input, e.g. reader or writer
+    private final boolean isIdentity;
+    private final ConcurrentSkipListMap<Long, Point> points = new ConcurrentSkipListMap<>();
+    // bytes of output between checkpoints, 0 if checkpoints are disabled
+    private volatile long interval = 0;
+    private volatile LongPredicate listener;
+    private long lastCommit = 0;
+
+    public StageCheckpoints(boolean isIdentity) {
+        this.isIdentity = isIdentity;
+    }
+
+    // Listener gets output offsets committed by the last stage and returns true if it has made a checkpoint
+    public void start(long interval, LongPredicate listener) {
+        points.clear();
+        lastCommit = 0;
+        this.listener = listener;
+        this.interval = interval;
+    }
+
+    public void stop() {
+        interval = 0;
+        listener = null;
+        points.clear();
+    }
+
+    public boolean isEnabled() {
+        return interval > 0;
+    }
+
+    public void record(long output, long input, String state) {
+        if (isEnabled() && !isIdentity)
+            points.put(output, new Point(input, state));
+    }
+
+    // Output is committed by the last stage when it's written and the stage has nothing of the next package
+    public boolean isCommitDue(long output) {
+        return isEnabled() && output - lastCommit >= interval;
+    }
+
+    public void commit(long output) {
+        LongPredicate commitListener = listener;
+        if (commitListener != null && commitListener.test(output))
+            lastCommit = output;
+    }
+
+    // Returns null if the job can't be restarted from this output offset
+    public Point find(long output) {
+        if (isIdentity)
+            return new Point(output, null);
+        return points.get(output);
+    }
+
+    // Points before the checkpoint are not needed anymore
+    public void forget(long output) {
+        points.headMap(output, true).clear();
+    }
+}
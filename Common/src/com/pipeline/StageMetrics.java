@@ -0,0 +1,178 @@
+package com.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters of one stage, can be updated by several threads of the stage at once.
+// Counters are not reset between jobs, so they show the whole work of the stage.
+public final class StageMetrics implements StageMetricsMBean {
+    private static final int HISTOGRAM_SIZE = 32;
+
+    private final String stage;
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder packagesIn = new LongAdder();
+    private final LongAdder packagesOut = new LongAdder();
+    private final LongAdder providerWait = new LongAdder();
+    private final LongAdder consumerWait = new LongAdder();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicInteger maxQueueSize = new AtomicInteger();
+    private final LongAdder queueSizeSum = new LongAdder();
+    private final LongAdder queueSizeSamples = new LongAdder();
+    private final AtomicLongArray latencies = new AtomicLongArray(HISTOGRAM_SIZE);
+    private final AtomicLong maxLatency = new AtomicLong();
+    private final LongAdder latencySum = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+
+    public StageMetrics(String stage) {
+        this.stage = stage;
+    }
+
+    public void addInput(long bytes, long waitNanos) {
+        bytesIn.add(bytes);
+        packagesIn.increment();
+        providerWait.add(waitNanos);
+    }
+
+    public void addOutput(long bytes, long waitNanos) {
+        bytesOut.add(bytes);
+        packagesOut.increment();
+        consumerWait.add(waitNanos);
+    }
+
+    // Waiting for consumer which is not related to one package
+    public void addConsumerWait(long waitNanos) {
+        consumerWait.add(waitNanos);
+    }
+
+    // Time of processing of one package
+    public void addLatency(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int bucket = Integer.min(HISTOGRAM_SIZE - 1, Long.SIZE - Long.numberOfLeadingZeros(micros));
+        latencies.incrementAndGet(bucket);
+        maxLatency.accumulateAndGet(micros, Long::max);
+        latencySum.add(nanos);
+        latencyCount.increment();
+    }
+
+    // Sum and number of latencies, so other stages can find the average latency of a period by their differences
+    public long getLatencySumNanos() {
+        return latencySum.sum();
+    }
+
+    public long getLatencyCount() {
+        return latencyCount.sum();
+    }
+
+    // Number of packages waiting for consumer in the queue of the stage
+    public void addQueueSize(int size) {
+        queueSize.set(size);
+        maxQueueSize.accumulateAndGet(size, Integer::max);
+        queueSizeSum.add(size);
+        queueSizeSamples.increment();
+    }
+
+    @Override
+    public String getStage() {
+        return stage;
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getPackagesIn() {
+        return packagesIn.sum();
+    }
+
+    @Override
+    public long getPackagesOut() {
+        return packagesOut.sum();
+    }
+
+    @Override
+    public long getProviderWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(providerWait.sum());
+    }
+
+    @Override
+    public long getConsumerWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(consumerWait.sum());
+    }
+
+    @Override
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    @Override
+    public int getMaxQueueSize() {
+        return maxQueueSize.get();
+    }
+
+    @Override
+    public double getAverageQueueSize() {
+        long samples = queueSizeSamples.sum();
+        return samples > 0 ? (double) queueSizeSum.sum() / samples : 0;
+    }
+
+    @Override
+    public long getLatencyMedianMicros() {
+        return latencyPercentile(0.5);
+    }
+
+    @Override
+    public long getLatency99Micros() {
+        return latencyPercentile(0.99);
+    }
+
+    @Override
+    public long getLatencyMaxMicros() {
+        return maxLatency.get();
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] histogram = new long[HISTOGRAM_SIZE];
+        for (int i = 0; i < HISTOGRAM_SIZE; ++i)
+            histogram[i] = latencies.get(i);
+        return histogram;
+    }
+
+    // Upper bound of the histogram bucket which contains the percentile
+    private long latencyPercentile(double percentile) {
+        long[] histogram = getLatencyHistogram();
+        long count = 0;
+        for (long bucket : histogram)
+            count += bucket;
+        if (count == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(count * percentile);
+        for (int i = 0; i < HISTOGRAM_SIZE; ++i) {
+            rank -= histogram[i];
+            if (rank <= 0)
+                return Long.min(1L << i, getLatencyMaxMicros());
+        }
+        return getLatencyMaxMicros();
+    }
+
+    public String summary() {
+        return String.format("%s: in %d bytes / %d packages, out %d bytes / %d packages, " +
+                        "provider wait %d ms, consumer wait %d ms, queue avg %.1f max %d, " +
+                        "latency p50 %d us p99 %d us max %d us",
+                stage, getBytesIn(), getPackagesIn(), getBytesOut(), getPackagesOut(),
+                getProviderWaitMillis(), getConsumerWaitMillis(), getAverageQueueSize(), getMaxQueueSize(),
+                getLatencyMedianMicros(), getLatency99Micros(), getLatencyMaxMicros());
+    }
+}
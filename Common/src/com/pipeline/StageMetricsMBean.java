@@ -0,0 +1,34 @@
+package com.pipeline;
+
+// Metrics of one stage of a pipeline seen through JMX.
+// Provider wait is the time the stage was blocked getting input, consumer wait is the time it was blocked giving output.
+public interface StageMetricsMBean {
+    String getStage();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    long getPackagesIn();
+
+    long getPackagesOut();
+
+    long getProviderWaitMillis();
+
+    long getConsumerWaitMillis();
+
+    int getQueueSize();
+
+    int getMaxQueueSize();
+
+    double getAverageQueueSize();
+
+    long getLatencyMedianMicros();
+
+    long getLatency99Micros();
+
+    long getLatencyMaxMicros();
+
+    // i-th element is the number of packages processed in less than 2^i microseconds, but not less than 2^(i-1)
+    long[] getLatencyHistogram();
+}
@@ -0,0 +1,107 @@
+package com.pipeline;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// The way workers of a pipeline get their threads.
+// Pipeline sets it as current for the thread which starts workers, so executors which start
+// their own threads (IExecutor.runThreads) use the same way as reader and writer.
+public abstract class WorkerThreads {
+    public interface Worker {
+        void join() throws InterruptedException;
+    }
+
+    private static final WorkerThreads platform = new WorkerThreads() {
+        @Override
+        public Worker start(Runnable task, String name) {
+            Thread thread = new Thread(task, name);
+            thread.start();
+            return thread::join;
+        }
+    };
+
+    private static final ThreadLocal<WorkerThreads> current = new ThreadLocal<>();
+
+    public abstract Worker start(Runnable task, String name);
+
+    // Pool for short non-blocking tasks of workers (e.g. coding of one package),
+    // null if workers do all the work in their own threads
+    public ForkJoinPool getTaskPool() {
+        return null;
+    }
+
+    // New platform thread for every worker
+    public static WorkerThreads platform() {
+        return platform;
+    }
+
+    // Threads of the pool are reused by workers of different pipelines.
+    // The pool must have enough threads for all workers of all pipelines running at once, otherwise they can block each other.
+    public static WorkerThreads pooled(ExecutorService pool) {
+        return new WorkerThreads() {
+            @Override
+            public Worker start(Runnable task, String name) {
+                Future<?> future = pool.submit(() -> {
+                    Thread thread = Thread.currentThread();
+                    String poolName = thread.getName();
+                    thread.setName(name);
+                    try {
+                        task.run();
+                    } catch (Throwable e) {
+                        // the same as uncaught exception in a thread, it's reported at once
+                        // and not when somebody joins the worker (it may never happen if others wait for this one)
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                    } finally {
+                        thread.setName(poolName);
+                    }
+                });
+                return () -> {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        // the task catches everything, so it can't happen
+                        throw new IllegalStateException(e.getCause());
+                    }
+                };
+            }
+        };
+    }
+
+    // Workers get threads from threads and split their work into tasks of taskPool.
+    // One task pool can be shared by all pipelines, so the number of busy threads doesn't depend on the number of workers.
+    public static WorkerThreads withTaskPool(WorkerThreads threads, ForkJoinPool taskPool) {
+        return new WorkerThreads() {
+            @Override
+            public Worker start(Runnable task, String name) {
+                return threads.start(task, name);
+            }
+
+            @Override
+            public ForkJoinPool getTaskPool() {
+                return taskPool;
+            }
+        };
+    }
+
+    // Executor which starts a new virtual thread for every task, null if JVM has no virtual threads (before Java 21).
+    // The project is built for Java 8, so the method is found by reflection.
+    public static ExecutorService newVirtualThreadPool() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public static WorkerThreads current() {
+        WorkerThreads threads = current.get();
+        return threads != null ? threads : platform;
+    }
+
+    public static void setCurrent(WorkerThreads threads) {
+        current.set(threads);
+    }
+}
@@ -0,0 +1,72 @@
+package com.pipeline;
+
+// Decoding of LZEncoder format. Every length and offset is checked, so broken data can't go out of arrays.
+final class LZDecoder {
+    // one byte of encoded data gives at most 255 bytes of output
+    static final int MAX_RATIO = 255;
+
+    private static final int NIBBLE_MAX = 15;
+
+    private LZDecoder() {}
+
+    // Decodes src[from, to) into the whole dst, returns false if the data is broken or its size differs from dst
+    static boolean decode(byte[] src, int from, int to, byte[] dst) {
+        int i = from;
+        int o = 0;
+        while (i < to) {
+            int token = src[i++] & 0xFF;
+            int literals = token >>> 4;
+            if (literals == NIBBLE_MAX) {
+                int b;
+                do {
+                    if (i == to || literals > dst.length)
+                        return false;
+                    b = src[i++] & 0xFF;
+                    literals += b;
+                } while (b == 255);
+            }
+            if (literals > to - i || literals > dst.length - o)
+                return false;
+            System.arraycopy(src, i, dst, o, literals);
+            i += literals;
+            o += literals;
+            // the last sequence has only literals
+            if (i == to)
+                break;
+
+            if (to - i < 2)
+                return false;
+            int offset = (src[i] & 0xFF) | (src[i + 1] & 0xFF) << 8;
+            i += 2;
+            if (offset == 0 || offset > o)
+                return false;
+
+            int length = token & NIBBLE_MAX;
+            if (length == NIBBLE_MAX) {
+                int b;
+                do {
+                    if (i == to || length > dst.length)
+                        return false;
+                    b = src[i++] & 0xFF;
+                    length += b;
+                } while (b == 255);
+            }
+            length += LZEncoder.MIN_MATCH;
+            if (length > dst.length - o)
+                return false;
+
+            // the match can overlap its own output, then it repeats the last offset bytes.
+            // Copied part is periodic, so every next copy can be twice longer.
+            int matchStart = o - offset;
+            int distance = offset;
+            while (length > 0) {
+                int count = Integer.min(distance, length);
+                System.arraycopy(dst, matchStart, dst, o, count);
+                o += count;
+                length -= count;
+                distance += count;
+            }
+        }
+        return o == dst.length;
+    }
+}
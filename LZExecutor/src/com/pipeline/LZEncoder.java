@@ -0,0 +1,128 @@
+package com.pipeline;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// LZ77 encoding into LZ4-like sequences. Every sequence is
+// [token: 4 bits of literals length, 4 bits of match length - MIN_MATCH][more literals length][literals]
+// [match offset: 2 bytes, little-endian][more match length].
+// A length nibble of 15 is continued by bytes which are added to it, the byte 255 means that more bytes follow.
+// The last sequence has only literals, so the data always ends with literals.
+// Matches are found by hash chains of positions with the same hash of 4 bytes, and the longest one of
+// MAX_CHAIN nearest candidates is taken. Encoder keeps its tables between packages, so it's not thread safe.
+final class LZEncoder {
+    static final int MIN_MATCH = 4;
+    // offsets are written in 2 bytes
+    static final int MAX_OFFSET = (1 << 16) - 1;
+
+    private static final int HASH_LOG = 14;
+    private static final int WINDOW_MASK = MAX_OFFSET;
+    private static final int MAX_CHAIN = 16;
+    // after 2^SKIP_STRENGTH positions without matches the step grows, so incompressible data is passed quickly
+    private static final int SKIP_STRENGTH = 6;
+    private static final int NIBBLE_MAX = 15;
+
+    // the last position with the hash, -1 if there is no such position
+    private final int[] head = new int[1 << HASH_LOG];
+    // the previous position with the same hash for every position of the window
+    private final int[] chain = new int[WINDOW_MASK + 1];
+
+    // Literals take one more byte for every 255 bytes, and the token of the last sequence
+    static int maxEncodedSize(int length) {
+        return length + length / 255 + 16;
+    }
+
+    // Encodes src[0, length) into dst starting with dstPos, dst must have at least maxEncodedSize(length) bytes.
+    // Returns position in dst after the encoded data.
+    int encode(byte[] src, int length, byte[] dst, int dstPos) {
+        Arrays.fill(head, -1);
+        ByteBuffer words = ByteBuffer.wrap(src).order(ByteOrder.LITTLE_ENDIAN);
+        // the last position where 4 bytes can be hashed
+        int limit = length - MIN_MATCH;
+        int anchor = 0;
+        int i = 0;
+        while (i <= limit) {
+            int candidate = insert(words, i);
+            int bestLength = 0;
+            int bestOffset = 0;
+            for (int chainLength = 0; candidate >= 0 && i - candidate <= MAX_OFFSET && chainLength < MAX_CHAIN; ++chainLength) {
+                int matchLength = matchLength(src, words, candidate, i, length);
+                if (matchLength > bestLength) {
+                    bestLength = matchLength;
+                    bestOffset = i - candidate;
+                }
+                candidate = chain[candidate & WINDOW_MASK];
+            }
+
+            if (bestLength < MIN_MATCH) {
+                i += 1 + ((i - anchor) >>> SKIP_STRENGTH);
+                continue;
+            }
+
+            dstPos = writeSequence(src, anchor, i - anchor, bestOffset, bestLength, dst, dstPos);
+            int end = i + bestLength;
+            // positions inside the match are the nearest candidates for the next matches
+            for (int j = i + 1; j < end && j <= limit; ++j)
+                insert(words, j);
+            i = end;
+            anchor = end;
+        }
+        return writeLastLiterals(src, anchor, length - anchor, dst, dstPos);
+    }
+
+    // Adds the position to the chains and returns the previous position with the same hash
+    private int insert(ByteBuffer words, int i) {
+        int hash = (words.getInt(i) * -1640531535) >>> (Integer.SIZE - HASH_LOG);
+        int candidate = head[hash];
+        chain[i & WINDOW_MASK] = candidate;
+        head[hash] = i;
+        return candidate;
+    }
+
+    // Compares 8 bytes at once, the first different byte is the lowest nonzero byte of xor
+    private static int matchLength(byte[] src, ByteBuffer words, int candidate, int i, int end) {
+        int length = 0;
+        while (i + length + Long.BYTES <= end) {
+            long diff = words.getLong(candidate + length) ^ words.getLong(i + length);
+            if (diff != 0)
+                return length + (Long.numberOfTrailingZeros(diff) >>> 3);
+            length += Long.BYTES;
+        }
+        while (i + length < end && src[candidate + length] == src[i + length])
+            ++length;
+        return length;
+    }
+
+    private static int writeSequence(byte[] src, int literalStart, int literals, int offset, int matchLength,
+                                     byte[] dst, int dstPos) {
+        int matchCode = matchLength - MIN_MATCH;
+        dst[dstPos++] = (byte) (Integer.min(literals, NIBBLE_MAX) << 4 | Integer.min(matchCode, NIBBLE_MAX));
+        dstPos = writeLength(dst, dstPos, literals);
+        System.arraycopy(src, literalStart, dst, dstPos, literals);
+        dstPos += literals;
+        dst[dstPos++] = (byte) offset;
+        dst[dstPos++] = (byte) (offset >>> 8);
+        return writeLength(dst, dstPos, matchCode);
+    }
+
+    private static int writeLastLiterals(byte[] src, int literalStart, int literals, byte[] dst, int dstPos) {
+        dst[dstPos++] = (byte) (Integer.min(literals, NIBBLE_MAX) << 4);
+        dstPos = writeLength(dst, dstPos, literals);
+        System.arraycopy(src, literalStart, dst, dstPos, literals);
+        return dstPos + literals;
+    }
+
+    // Rest of the length which doesn't fit into the nibble of the token
+    private static int writeLength(byte[] dst, int dstPos, int length) {
+        if (length < NIBBLE_MAX)
+            return dstPos;
+        length -= NIBBLE_MAX;
+        while (length >= 255) {
+            dst[dstPos++] = (byte) 255;
+            length -= 255;
+        }
+        dst[dstPos++] = (byte) length;
+        return dstPos;
+    }
+}
@@ -0,0 +1,146 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.*;
+
+import java.util.Arrays;
+
+// LZ77 codec (see LZEncoder). Every package is coded independently and wrapped into LZFrame,
+// so packages are encoded and decoded by NUM_OF_THREADS threads at once and given to consumer in order.
+public class LZExecutor extends ParallelExecutor {
+    private enum Mode {
+        ENCODE ("ENCODE"),
+        DECODE ("DECODE");
+        private final String str;
+
+        Mode(String str) {
+            this.str = str;
+        }
+        String toStr() {
+            return str;
+        }
+    }
+
+    // Config
+    private Mode mode;
+    private int bufferSize;
+
+    public LZExecutor() {
+        super("LZExecutor");
+    }
+
+    private class LZCoder implements ICoder {
+        private final LZEncoder encoder = mode == Mode.ENCODE ? new LZEncoder() : null;
+        // frame is encoded here and then copied to the package of its size
+        private byte[] frame = new byte[mode == Mode.ENCODE ? LZFrame.HEADER_SIZE + LZEncoder.maxEncodedSize(bufferSize) : 0];
+        private byte[] result;
+
+        @Override
+        public RC run(byte[] data, long number) {
+            if (data == null)
+                return RC.RC_SUCCESS;
+            if (mode == Mode.ENCODE) {
+                RC sizeRc = FrameSplitter.checkPackageSize(data);
+                if (!sizeRc.isSuccess())
+                    return sizeRc;
+                result = encode(data);
+            }
+            else
+                result = decode(data);
+            if (result == null)
+                return new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CUSTOM_ERROR, "Invalid LZ frame");
+            return RC.RC_SUCCESS;
+        }
+
+        @Override
+        public byte[] takeResult() {
+            byte[] out = result;
+            result = null;
+            return out;
+        }
+
+        @Override
+        public void reset() {
+            pool.release(result);
+            result = null;
+        }
+
+        private byte[] encode(byte[] data) {
+            int maxFrameSize = LZFrame.HEADER_SIZE + LZEncoder.maxEncodedSize(data.length);
+            if (frame.length < maxFrameSize)
+                frame = new byte[maxFrameSize];
+            int end = encoder.encode(data, data.length, frame, LZFrame.HEADER_SIZE);
+            int encodedLength = end - LZFrame.HEADER_SIZE;
+
+            // package which LZ doesn't make smaller is stored as is
+            if (encodedLength >= data.length) {
+                byte[] out = pool.get(LZFrame.HEADER_SIZE + data.length);
+                LZFrame.writeHeader(out, 0, LZFrame.TYPE_RAW, data.length, data.length);
+                System.arraycopy(data, 0, out, LZFrame.HEADER_SIZE, data.length);
+                return out;
+            }
+
+            LZFrame.writeHeader(frame, 0, LZFrame.TYPE_LZ, encodedLength, data.length);
+            // encoded sizes vary, so such frames are not taken from the pool
+            return Arrays.copyOf(frame, end);
+        }
+
+        // Returns null if the frame is broken
+        private byte[] decode(byte[] data) {
+            byte[] out = pool.get(LZFrame.getOriginalLength(data, 0));
+            if (LZFrame.getType(data, 0) == LZFrame.TYPE_RAW)
+                System.arraycopy(data, LZFrame.HEADER_SIZE, out, 0, out.length);
+            else if (!LZDecoder.decode(data, LZFrame.HEADER_SIZE, data.length, out)) {
+                pool.release(out);
+                return null;
+            }
+            return out;
+        }
+    }
+
+    @Override
+    protected ICoder newCoder() {
+        return new LZCoder();
+    }
+
+    @Override
+    protected FrameSplitter newFrameSplitter(IMediator mediator, boolean isPooled) {
+        if (mode != Mode.DECODE)
+            return null;
+        return new FrameSplitter(mediator, pool, isPooled, LZFrame.HEADER_SIZE,
+                (header, offset) -> LZFrame.isValidHeader(header, offset) ? LZFrame.getEncodedLength(header, offset) : -1,
+                "LZ frame");
+    }
+
+    @Override
+    public RC setConfig(String s) {
+        ConfigReader configReader = new ConfigReader(RC.RCWho.EXECUTOR, new LZExecutorConfigGrammar());
+        RC rc = configReader.read(s);
+        if (!rc.isSuccess())
+            return rc;
+
+        for (LZExecutorConfigGrammar.ConfigParams param : LZExecutorConfigGrammar.ConfigParams.values()) {
+            if (!configReader.hasKey(param.toStr()))
+                return RC.RC_EXECUTOR_CONFIG_SEMANTIC_ERROR;
+        }
+
+        try {
+            bufferSize = Integer.parseInt(configReader.getParam(LZExecutorConfigGrammar.ConfigParams.BUFFER_SIZE.toStr()));
+            numOfThreads = Integer.parseInt(configReader.getParam(LZExecutorConfigGrammar.ConfigParams.NUM_OF_THREADS.toStr()));
+            maxPackagesNum = Integer.parseInt(configReader.getParam(LZExecutorConfigGrammar.ConfigParams.MAX_PACKAGES_NUM.toStr()));
+        } catch (NumberFormatException e) {
+            return RC.RC_EXECUTOR_CONFIG_SEMANTIC_ERROR;
+        }
+        if (bufferSize <= 0 || numOfThreads < 1 || maxPackagesNum < 1)
+            return RC.RC_EXECUTOR_CONFIG_SEMANTIC_ERROR;
+
+        String modeStr = configReader.getParam(LZExecutorConfigGrammar.ConfigParams.MODE.toStr());
+        if (modeStr.equalsIgnoreCase(Mode.ENCODE.toStr()))
+            mode = Mode.ENCODE;
+        else if (modeStr.equalsIgnoreCase(Mode.DECODE.toStr()))
+            mode = Mode.DECODE;
+        else
+            return RC.RC_EXECUTOR_CONFIG_SEMANTIC_ERROR;
+
+        return RC.RC_SUCCESS;
+    }
+}
@@ -0,0 +1,61 @@
+package com.pipeline;
+
+// Every package encoded by LZExecutor is a frame with a header
+// [type: 1 byte][encoded length: 4 bytes][original length: 4 bytes] (big-endian),
+// so the decoder can find package boundaries without decoding and decode packages in parallel.
+// Payload of a raw frame is the original package, it's used when LZ doesn't make the package smaller.
+final class LZFrame {
+    static final int HEADER_SIZE = 9;
+    static final byte TYPE_LZ = 1;
+    static final byte TYPE_RAW = 2;
+
+    private static final int ENCODED_LENGTH_OFFSET = 1;
+    private static final int ORIGINAL_LENGTH_OFFSET = 5;
+
+    private LZFrame() {}
+
+    static void writeHeader(byte[] frame, int offset, byte type, int encodedLength, int originalLength) {
+        frame[offset] = type;
+        writeInt(frame, offset + ENCODED_LENGTH_OFFSET, encodedLength);
+        writeInt(frame, offset + ORIGINAL_LENGTH_OFFSET, originalLength);
+    }
+
+    static byte getType(byte[] frame, int offset) {
+        return frame[offset];
+    }
+
+    static int getEncodedLength(byte[] frame, int offset) {
+        return readInt(frame, offset + ENCODED_LENGTH_OFFSET);
+    }
+
+    static int getOriginalLength(byte[] frame, int offset) {
+        return readInt(frame, offset + ORIGINAL_LENGTH_OFFSET);
+    }
+
+    // Encoded length can't be more than the encoder gives for the original length
+    static boolean isValidHeader(byte[] frame, int offset) {
+        byte type = getType(frame, offset);
+        int encodedLength = getEncodedLength(frame, offset);
+        int originalLength = getOriginalLength(frame, offset);
+        if (encodedLength < 0 || originalLength < 0 || originalLength > FrameSplitter.MAX_PACKAGE_SIZE)
+            return false;
+        // one byte of LZ sequence can't give more than 255 bytes of output
+        return type == TYPE_LZ && originalLength / LZDecoder.MAX_RATIO <= encodedLength &&
+                encodedLength <= LZEncoder.maxEncodedSize(originalLength) ||
+                type == TYPE_RAW && encodedLength == originalLength;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 |
+                (bytes[offset + 1] & 0xFF) << 16 |
+                (bytes[offset + 2] & 0xFF) << 8 |
+                bytes[offset + 3] & 0xFF;
+    }
+}
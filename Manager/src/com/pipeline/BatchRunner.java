@@ -0,0 +1,212 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.RC;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Runs many file jobs on a fixed set of pipelines, at most one job on a pipeline at once.
+// Reports throughput of every file and of the whole batch.
+class BatchRunner {
+    private static final String MANIFEST_SEPARATOR = "=";
+    private static final String MANIFEST_COMMENT = "#";
+    private static final double MB = 1024 * 1024;
+
+    static class Job {
+        final Path input;
+        final Path output;
+
+        Job(Path input, Path output) {
+            this.input = input;
+            this.output = output;
+        }
+    }
+
+    private static class Result {
+        final RC rc;
+        final long inputSize;
+        final long outputSize;
+
+        Result(RC rc, long inputSize, long outputSize) {
+            this.rc = rc;
+            this.inputSize = inputSize;
+            this.outputSize = outputSize;
+        }
+    }
+
+    private final LinkedBlockingQueue<Pipeline> idlePipelines;
+    private final int numOfPipelines;
+
+    BatchRunner(List<Pipeline> pipelines) {
+        idlePipelines = new LinkedBlockingQueue<>(pipelines);
+        numOfPipelines = pipelines.size();
+    }
+
+    // Manifest has lines "input = output", lines starting with # are comments
+    static RC readManifest(String manifest, List<Job> jobs) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(manifest))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith(MANIFEST_COMMENT))
+                    continue;
+                String[] words = line.split(MANIFEST_SEPARATOR);
+                if (words.length != 2 || words[0].trim().isEmpty() || words[1].trim().isEmpty())
+                    return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CONFIG_GRAMMAR_ERROR,
+                            "Grammar error in " + manifest + " in line: " + line);
+                jobs.add(new Job(Paths.get(words[0].trim()), Paths.get(words[1].trim())));
+            }
+        } catch (FileNotFoundException e) {
+            return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CONFIG_FILE_ERROR, "Could not open " + manifest);
+        } catch (IOException e) {
+            return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_FAILED_TO_READ, "Could not read " + manifest);
+        }
+        return RC.RC_SUCCESS;
+    }
+
+    // Input is a glob in the last component of the path, e.g. dir/*.avi.
+    // Output file has the name of the input with suffix, it's placed in outputDir or near the input if outputDir is empty.
+    static RC findInputs(String input, String outputDir, String suffix, List<Job> jobs) {
+        Path pattern = Paths.get(input);
+        Path dir = pattern.getParent() != null ? pattern.getParent() : Paths.get(".");
+        Path outDir = outputDir.isEmpty() ? dir : Paths.get(outputDir);
+
+        ArrayList<Path> inputs = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, pattern.getFileName().toString())) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path))
+                    inputs.add(path);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR, "Could not list files " + input);
+        }
+        Collections.sort(inputs);
+
+        for (Path path : inputs) {
+            Path output = outDir.resolve(path.getFileName() + suffix);
+            // outputs of the previous batch can match the glob too
+            if (output.toAbsolutePath().normalize().equals(path.toAbsolutePath().normalize()))
+                return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CONFIG_SEMANTIC_ERROR,
+                        "Output file is the same as input " + path);
+            jobs.add(new Job(path, output));
+        }
+        return RC.RC_SUCCESS;
+    }
+
+    // Returns error of the first failed job, other jobs are processed anyway
+    RC run(List<Job> jobs) {
+        ExecutorService jobsPool = Executors.newFixedThreadPool(numOfPipelines);
+        ArrayList<Future<Result>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (Job job : jobs)
+            results.add(jobsPool.submit(() -> runJob(job)));
+        jobsPool.shutdown();
+
+        RC resRc = RC.RC_SUCCESS;
+        long totalInput = 0;
+        long totalOutput = 0;
+        int failed = 0;
+        boolean isInterrupted = false;
+        for (Future<Result> future : results) {
+            Result result = null;
+            while (result == null) {
+                try {
+                    result = future.get();
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                    cancel(jobsPool);
+                } catch (ExecutionException | CancellationException e) {
+                    result = new Result(new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR, "Batch job was not finished"), 0, 0);
+                    Manager.handleError(result.rc);
+                }
+            }
+            if (!result.rc.isSuccess()) {
+                ++failed;
+                if (resRc.isSuccess())
+                    resRc = result.rc;
+            }
+            totalInput += result.inputSize;
+            totalOutput += result.outputSize;
+        }
+        long time = System.nanoTime() - start;
+
+        Manager.logInfo(String.format("Batch: %d files (%d failed), %d -> %d bytes, %d ms, %.1f MB/s",
+                jobs.size(), failed, totalInput, totalOutput, time / 1_000_000, throughput(totalInput, time)));
+        if (isInterrupted)
+            Thread.currentThread().interrupt();
+        return resRc;
+    }
+
+    // Interrupts running jobs and waits until they stop, so the pipelines are not closed under them.
+    // Jobs which were not started are cancelled, otherwise their futures are never done.
+    private static void cancel(ExecutorService jobsPool) {
+        for (Runnable notStarted : jobsPool.shutdownNow())
+            ((Future<?>) notStarted).cancel(false);
+        while (true) {
+            try {
+                if (jobsPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS))
+                    return;
+            } catch (InterruptedException e) {
+                // the interrupt is restored by run()
+            }
+        }
+    }
+
+    private Result runJob(Job job) throws InterruptedException {
+        Pipeline pipeline = idlePipelines.take();
+        try {
+            return runJob(pipeline, job);
+        } finally {
+            idlePipelines.put(pipeline);
+        }
+    }
+
+    private static Result runJob(Pipeline pipeline, Job job) {
+        long start = System.nanoTime();
+        RC rc;
+        try (FileInputStream fin = new FileInputStream(job.input.toFile())) {
+            try (FileOutputStream fout = new FileOutputStream(job.output.toFile())) {
+                rc = pipeline.run(fin, fout);
+            } catch (FileNotFoundException e) {
+                rc = new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR, "Could not open output file " + job.output);
+                Manager.handleError(rc);
+            }
+        } catch (FileNotFoundException e) {
+            rc = new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR, "Could not open input file " + job.input);
+            Manager.handleError(rc);
+        } catch (IOException e) {
+            rc = new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR, "Could not close files of " + job.input);
+            Manager.handleError(rc);
+        }
+        long time = System.nanoTime() - start;
+
+        long inputSize = job.input.toFile().length();
+        long outputSize = job.output.toFile().length();
+        Manager.logInfo(String.format("%s -> %s: %s, %d -> %d bytes, %d ms, %.1f MB/s",
+                job.input, job.output, rc.isSuccess() ? "done" : "failed",
+                inputSize, outputSize, time / 1_000_000, throughput(inputSize, time)));
+        return new Result(rc, inputSize, outputSize);
+    }
+
+    private static double throughput(long bytes, long nanos) {
+        return nanos > 0 ? bytes / MB / (nanos / 1e9) : 0;
+    }
+}
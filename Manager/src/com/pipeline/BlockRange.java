@@ -0,0 +1,105 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.*;
+
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+
+// Range of the original data decoded from a file with BlockIndex at the end.
+// Only the blocks which contain the range are read, they follow each other in the file and are decoded
+// by the framed decoder in parallel as usual. Bytes of the first and the last blocks out of the range are dropped.
+public class BlockRange {
+    private final long offset;
+    private long length;
+    // bytes of the first block before the range
+    private long skipped;
+    // encoded bytes of the blocks
+    private long encodedLength;
+
+    public BlockRange(long offset, long length) {
+        this.offset = offset;
+        this.length = length;
+    }
+
+    // Finds the blocks in the index of the input and positions the input at the first of them
+    public RC open(FileInputStream input) {
+        FileChannel channel = input.getChannel();
+        BlockIndex index;
+        try {
+            index = BlockIndex.read(channel);
+        } catch (IOException e) {
+            return RC.RC_MANAGER_INVALID_INPUT_FILE;
+        }
+        if (index == null)
+            return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR, "Input file has no block index");
+        if (offset >= index.getOriginalSize())
+            return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR,
+                    "Range starts after the end of data (" + index.getOriginalSize() + " bytes)");
+        length = Long.min(length, index.getOriginalSize() - offset);
+
+        int first = index.findBlock(offset);
+        int last = index.findBlock(offset + length - 1);
+        long encodedStart = index.getEncodedOffset(first);
+        skipped = offset - index.getOriginalOffset(first);
+        encodedLength = index.getEncodedOffset(last) + index.getEncodedLength(last) - encodedStart;
+        try {
+            channel.position(encodedStart);
+        } catch (IOException e) {
+            return RC.RC_MANAGER_INVALID_INPUT_FILE;
+        }
+
+        Manager.logInfo("Decoding blocks " + first + "-" + last + " of " + index.size() +
+                ": " + encodedLength + " encoded bytes from offset " + encodedStart);
+        return RC.RC_SUCCESS;
+    }
+
+    // Input positioned by open() which ends after the last block of the range
+    public InputStream wrapInput(InputStream input) {
+        return new FilterInputStream(input) {
+            private long remaining = encodedLength;
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining == 0)
+                    return -1;
+                int count = super.read(b, off, (int) Long.min(len, remaining));
+                if (count > 0)
+                    remaining -= count;
+                return count;
+            }
+        };
+    }
+
+    // Output which gets decoded blocks and writes only the range
+    public OutputStream wrapOutput(OutputStream output) {
+        return new FilterOutputStream(output) {
+            // position in decoded blocks
+            private long position = 0;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                long from = Long.max(position, skipped);
+                long to = Long.min(position + len, skipped + length);
+                if (from < to)
+                    out.write(b, off + (int) (from - position), (int) (to - from));
+                position += len;
+            }
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package com.pipeline;
+
+public class CheckpointConfigGrammar implements IConfigGrammar {
+    public enum ConfigParams {
+        INPUT_OFFSET ("INPUT_OFFSET"),
+        OUTPUT_OFFSET ("OUTPUT_OFFSET"),
+        // states of stages in the order of the pipeline
+        STATES ("STATES");
+
+        private final String str;
+        ConfigParams(String str) {
+            this.str = str;
+        }
+
+        public String toStr() {
+            return str;
+        }
+    }
+
+    @Override
+    public boolean hasKey(String key) {
+        for (ConfigParams param : ConfigParams.values()) {
+            if (key.equalsIgnoreCase(param.toStr()))
+                return true;
+        }
+        return false;
+    }
+}
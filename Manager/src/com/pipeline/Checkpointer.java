@@ -0,0 +1,165 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.*;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+
+// Checkpoints of the job in a file: offsets of input and output and states of stages
+// where the job can be restarted after a crash.
+// The output before the checkpoint is forced to the disk before the file is replaced, so the file never
+// points after the written data. The file is replaced atomically, a crash leaves the previous checkpoint.
+public class Checkpointer {
+    private static final String STATES_SEPARATOR = ";";
+    // value of the parameter can't be empty
+    private static final String NO_STATE = "-";
+
+    private final Path file;
+    private final long interval;
+    private FileOutputStream output;
+    // the checkpoint which the job starts from, offsets of stages are counted from it
+    private long inputBase = 0;
+    private long outputBase = 0;
+    private String[] states;
+    private final ArrayList<StageCheckpoints> stages = new ArrayList<>();
+
+    // Interval is the number of bytes of output between checkpoints
+    public Checkpointer(String file, long interval) {
+        this.file = Paths.get(file);
+        this.interval = interval;
+    }
+
+    public boolean exists() {
+        return Files.exists(file);
+    }
+
+    // Reads the checkpoint left by the previous run
+    public RC load() {
+        ConfigReader configReader = new ConfigReader(RC.RCWho.MANAGER, new CheckpointConfigGrammar());
+        RC rc = configReader.read(file.toString());
+        if (!rc.isSuccess())
+            return rc;
+
+        for (CheckpointConfigGrammar.ConfigParams param : CheckpointConfigGrammar.ConfigParams.values()) {
+            if (!configReader.hasKey(param.toStr()))
+                return invalidCheckpoint();
+        }
+        try {
+            inputBase = Long.parseLong(configReader.getParam(CheckpointConfigGrammar.ConfigParams.INPUT_OFFSET.toStr()));
+            outputBase = Long.parseLong(configReader.getParam(CheckpointConfigGrammar.ConfigParams.OUTPUT_OFFSET.toStr()));
+        } catch (NumberFormatException e) {
+            return invalidCheckpoint();
+        }
+        if (inputBase < 0 || outputBase < 0)
+            return invalidCheckpoint();
+        states = configReader.getParam(CheckpointConfigGrammar.ConfigParams.STATES.toStr()).split(STATES_SEPARATOR);
+        return RC.RC_SUCCESS;
+    }
+
+    private RC invalidCheckpoint() {
+        return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR, "Invalid checkpoint " + file);
+    }
+
+    public long getInputOffset() {
+        return inputBase;
+    }
+
+    public long getOutputOffset() {
+        return outputBase;
+    }
+
+    // Output of the job, it's forced to the disk at checkpoints
+    public void setOutput(FileOutputStream output) {
+        this.output = output;
+    }
+
+    // Restores states of stages from the loaded checkpoint and starts checkpoints of the job.
+    // Stages are in the order of the pipeline.
+    public RC start(ArrayList<ICheckpointable> checkpointables) {
+        if (states != null && states.length != checkpointables.size())
+            return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR,
+                    "Checkpoint " + file + " does not match stages of the pipeline");
+
+        stages.clear();
+        for (int i = 0; i < checkpointables.size(); ++i) {
+            ICheckpointable stage = checkpointables.get(i);
+            String state = states == null || states[i].equals(NO_STATE) ? null : states[i];
+            if (!stage.restoreState(state))
+                return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR,
+                        "Could not restore state of " + stage.getClass().getSimpleName());
+            stages.add(stage.getCheckpoints());
+        }
+        for (StageCheckpoints stage : stages)
+            stage.start(interval, this::commit);
+        return RC.RC_SUCCESS;
+    }
+
+    public void stop() {
+        for (StageCheckpoints stage : stages)
+            stage.stop();
+        stages.clear();
+    }
+
+    // The job is done, there is nothing to resume
+    public RC remove() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR, "Could not remove checkpoint " + file);
+        }
+        return RC.RC_SUCCESS;
+    }
+
+    // Called by the last stage, the output offset is traced back through all stages to the input offset
+    private synchronized boolean commit(long outputOffset) {
+        String[] newStates = new String[stages.size()];
+        long[] stagesOutputs = new long[stages.size()];
+        long offset = outputOffset;
+        for (int i = stages.size() - 1; i >= 0; --i) {
+            StageCheckpoints.Point point = stages.get(i).find(offset);
+            // some stage can't be restarted here, the next package may be better
+            if (point == null)
+                return false;
+            stagesOutputs[i] = offset;
+            newStates[i] = point.state == null ? NO_STATE : point.state;
+            offset = point.input;
+        }
+
+        try {
+            output.getChannel().force(false);
+            write(inputBase + offset, outputBase + outputOffset, newStates);
+        } catch (IOException e) {
+            Manager.handleError(new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR,
+                    "Could not write checkpoint " + file));
+            return false;
+        }
+
+        for (int i = 0; i < stages.size(); ++i)
+            stages.get(i).forget(stagesOutputs[i]);
+        return true;
+    }
+
+    private void write(long inputOffset, long outputOffset, String[] newStates) throws IOException {
+        Path tmp = Paths.get(file + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(CheckpointConfigGrammar.ConfigParams.INPUT_OFFSET.toStr() + " = " + inputOffset);
+            writer.newLine();
+            writer.write(CheckpointConfigGrammar.ConfigParams.OUTPUT_OFFSET.toStr() + " = " + outputOffset);
+            writer.newLine();
+            writer.write(CheckpointConfigGrammar.ConfigParams.STATES.toStr() + " = " +
+                    String.join(STATES_SEPARATOR, newStates));
+            writer.newLine();
+        }
+        try (FileOutputStream sync = new FileOutputStream(tmp.toFile(), true)) {
+            sync.getFD().sync();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
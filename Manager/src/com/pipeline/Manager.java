@@ -6,19 +6,66 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 
 public class Manager implements IConfigurable {
-    IReader reader;
-    ArrayList<IExecutor> executors = new ArrayList<>();
+    private enum Scheduler {
+        // every worker has its own threads
+        THREADS ("THREADS"),
+        // packages of executors are coded by tasks of one pool sized to cores
+        FORK_JOIN ("FORK_JOIN");
+        private final String str;
+
+        Scheduler(String str) {
+            this.str = str;
+        }
+        String toStr() {
+            return str;
+        }
+    }
+
+    private enum ThreadModel {
+        PLATFORM ("PLATFORM"),
+        // needs Java 21, blocked workers don't hold OS threads, so many pipelines can run at once
+        VIRTUAL ("VIRTUAL");
+        private final String str;
+
+        ThreadModel(String str) {
+            this.str = str;
+        }
+        String toStr() {
+            return str;
+        }
+    }
+
+    Class<?> readerClass;
+    ArrayList<Class<?>> executorsClasses = new ArrayList<>();
     String executorsSeparator = ",";
     String configsSeparator = ",";
-    IWriter writer;
+    Class<?> writerClass;
+    Pipeline pipeline;
     FileInputStream fin;
     FileOutputStream fout;
+    // threads of workers, if null every worker starts its own platform thread
+    ExecutorService workersPool;
+    // batch mode
+    ArrayList<Pipeline> pipelines = new ArrayList<>();
+    ArrayList<BatchRunner.Job> jobs = new ArrayList<>();
+    boolean isBatch;
+    ForkJoinPool taskPool;
+    // checkpoints of the single job, null if they are disabled
+    Checkpointer checkpointer;
+    boolean isResumed;
+    // range of the data decoded from the indexed input, null if the whole input is processed
+    BlockRange blockRange;
     private static Logger logger;
 
     private RC openStreams(ConfigReader configReader) {
@@ -28,6 +75,15 @@ public class Manager implements IConfigurable {
             return RC.RC_MANAGER_INVALID_INPUT_FILE;
         }
 
+        if (isResumed)
+            return openResumedStreams(configReader);
+
+        if (blockRange != null) {
+            RC rc = blockRange.open(fin);
+            if (!rc.isSuccess())
+                return rc;
+        }
+
         try {
             fout = new FileOutputStream(configReader.getParam(ManagerConfigGrammar.ConfigParams.OUTPUT_FILE.toStr()));
         } catch (FileNotFoundException e) {
@@ -37,15 +93,110 @@ public class Manager implements IConfigurable {
         return RC.RC_SUCCESS;
     }
 
+    // Input continues from the checkpoint, output is cut after the checkpoint and continued
+    private RC openResumedStreams(ConfigReader configReader) {
+        try {
+            fin.getChannel().position(checkpointer.getInputOffset());
+        } catch (IOException e) {
+            return RC.RC_MANAGER_INVALID_INPUT_FILE;
+        }
+
+        try {
+            RandomAccessFile file = new RandomAccessFile(
+                    configReader.getParam(ManagerConfigGrammar.ConfigParams.OUTPUT_FILE.toStr()), "rw");
+            long outputOffset = checkpointer.getOutputOffset();
+            if (file.length() < outputOffset) {
+                file.close();
+                return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR,
+                        "Output is shorter than the checkpoint, the job can't be resumed");
+            }
+            file.setLength(outputOffset);
+            file.seek(outputOffset);
+            fout = new FileOutputStream(file.getFD());
+        } catch (IOException e) {
+            return RC.RC_MANAGER_INVALID_OUTPUT_FILE;
+        }
+
+        logInfo("Resuming from checkpoint: input offset " + checkpointer.getInputOffset() +
+                ", output offset " + checkpointer.getOutputOffset());
+        return RC.RC_SUCCESS;
+    }
+
+    // Checkpoint of the job is kept next to its output
+    private RC findCheckpointer(ConfigReader configReader) {
+        long interval = 0;
+        String key = ManagerConfigGrammar.ConfigParams.CHECKPOINT_INTERVAL.toStr();
+        if (configReader.hasKey(key)) {
+            try {
+                interval = Long.parseLong(configReader.getParam(key));
+            } catch (NumberFormatException e) {
+                return RC.RC_MANAGER_CONFIG_SEMANTIC_ERROR;
+            }
+            if (interval < 0)
+                return RC.RC_MANAGER_CONFIG_SEMANTIC_ERROR;
+        }
+
+        boolean isResume = false;
+        key = ManagerConfigGrammar.ConfigParams.RESUME.toStr();
+        if (configReader.hasKey(key)) {
+            String resumeStr = configReader.getParam(key);
+            if (resumeStr.equalsIgnoreCase("true"))
+                isResume = true;
+            else if (!resumeStr.equalsIgnoreCase("false"))
+                return RC.RC_MANAGER_CONFIG_SEMANTIC_ERROR;
+        }
+
+        if (interval == 0 && !isResume)
+            return RC.RC_SUCCESS;
+        if (isBatch)
+            return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CONFIG_SEMANTIC_ERROR,
+                    "Checkpoints are not supported in batch mode");
+
+        checkpointer = new Checkpointer(
+                configReader.getParam(ManagerConfigGrammar.ConfigParams.OUTPUT_FILE.toStr()) + ".checkpoint", interval);
+        // without checkpoint the job starts from the beginning
+        if (isResume && checkpointer.exists()) {
+            RC rc = checkpointer.load();
+            if (!rc.isSuccess())
+                return rc;
+            isResumed = true;
+        }
+        return RC.RC_SUCCESS;
+    }
+
+    private RC findRange(ConfigReader configReader) {
+        String offsetKey = ManagerConfigGrammar.ConfigParams.RANGE_OFFSET.toStr();
+        String lengthKey = ManagerConfigGrammar.ConfigParams.RANGE_LENGTH.toStr();
+        if (!configReader.hasKey(offsetKey) && !configReader.hasKey(lengthKey))
+            return RC.RC_SUCCESS;
+        if (!configReader.hasKey(offsetKey) || !configReader.hasKey(lengthKey))
+            return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CONFIG_SEMANTIC_ERROR,
+                    "Range needs both " + offsetKey + " and " + lengthKey);
+        if (isBatch || checkpointer != null)
+            return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CONFIG_SEMANTIC_ERROR,
+                    "Range can't be decoded in batch mode or with checkpoints");
+
+        long offset;
+        long length;
+        try {
+            offset = Long.parseLong(configReader.getParam(offsetKey));
+            length = Long.parseLong(configReader.getParam(lengthKey));
+        } catch (NumberFormatException e) {
+            return RC.RC_MANAGER_CONFIG_SEMANTIC_ERROR;
+        }
+        if (offset < 0 || length < 1)
+            return RC.RC_MANAGER_CONFIG_SEMANTIC_ERROR;
+        blockRange = new BlockRange(offset, length);
+        return RC.RC_SUCCESS;
+    }
+
     private RC findClasses(ConfigReader configReader) {
         String key = ManagerConfigGrammar.ConfigParams.READER_NAME.toStr();
         try {
-            Class<?> ReaderClass = Class.forName(configReader.getParam(key));
-            if (IReader.class.isAssignableFrom(ReaderClass))
-                reader = (IReader)ReaderClass.getDeclaredConstructor().newInstance();
-            else
+            readerClass = Class.forName(configReader.getParam(key));
+            if (!IReader.class.isAssignableFrom(readerClass))
                 return RC.RC_MANAGER_INVALID_READER_CLASS;
-
+            readerClass.getDeclaredConstructor();
         } catch (Exception e) {
             return RC.RC_MANAGER_INVALID_READER_CLASS;
         }
@@ -58,12 +209,11 @@ public class Manager implements IConfigurable {
         for (String executor : executorsNamesArr) {
             executor = executor.trim();
             try {
-                Class<?> ExecutorClass = Class.forName(executor);
-                if (IExecutor.class.isAssignableFrom(ExecutorClass))
-                    executors.add((IExecutor)ExecutorClass.getDeclaredConstructor().newInstance());
-                else
+                Class<?> executorClass = Class.forName(executor);
+                if (!IExecutor.class.isAssignableFrom(executorClass))
                     return RC.RC_MANAGER_INVALID_EXECUTOR_CLASS;
-
+                executorClass.getDeclaredConstructor();
+                executorsClasses.add(executorClass);
             } catch (Exception e) {
                 return RC.RC_MANAGER_INVALID_EXECUTOR_CLASS;
             }
@@ -71,12 +221,10 @@ public class Manager implements IConfigurable {
 
         key = ManagerConfigGrammar.ConfigParams.WRITER_NAME.toStr();
         try {
-            Class<?> WriterClass = Class.forName(configReader.getParam(key));
-            if (IWriter.class.isAssignableFrom(WriterClass))
-                writer = (IWriter) WriterClass.getDeclaredConstructor().newInstance();
-            else
+            writerClass = Class.forName(configReader.getParam(key));
+            if (!IWriter.class.isAssignableFrom(writerClass))
                 return RC.RC_MANAGER_INVALID_WRITER_CLASS;
-
+            writerClass.getDeclaredConstructor();
         } catch (Exception e) {
             return RC.RC_MANAGER_INVALID_WRITER_CLASS;
         }
@@ -84,42 +232,122 @@ public class Manager implements IConfigurable {
         return RC.RC_SUCCESS;
     }
 
-    private RC setWorkersConfigs(ConfigReader configReader) {
-        RC rc = reader.setConfig(configReader.getParam(ManagerConfigGrammar.ConfigParams.READER_CONFIG.toStr()));
-        if (!rc.isSuccess())
-            return rc;
-
-        String configsStr = configReader.getParam(ManagerConfigGrammar.ConfigParams.EXECUTORS_CONFIGS.toStr());
-        String[] configs = configsStr.split(configsSeparator);
-        if (configs.length != executors.size())
+    private RC findScheduler(ConfigReader configReader) {
+        String key = ManagerConfigGrammar.ConfigParams.SCHEDULER.toStr();
+        if (!configReader.hasKey(key))
+            return RC.RC_SUCCESS;
+        String schedulerStr = configReader.getParam(key);
+        if (schedulerStr.equalsIgnoreCase(Scheduler.FORK_JOIN.toStr()))
+            taskPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        else if (!schedulerStr.equalsIgnoreCase(Scheduler.THREADS.toStr()))
             return RC.RC_MANAGER_CONFIG_SEMANTIC_ERROR;
-        for (int i = 0; i < configs.length; ++i) {
-            String config = configs[i].trim();
-            rc = executors.get(i).setConfig(config);
-            if (!rc.isSuccess())
-                return rc;
-        }
+        return RC.RC_SUCCESS;
+    }
 
-        rc = writer.setConfig(configReader.getParam(ManagerConfigGrammar.ConfigParams.WRITER_CONFIG.toStr()));
+    private RC findThreadModel(ConfigReader configReader) {
+        String key = ManagerConfigGrammar.ConfigParams.THREAD_MODEL.toStr();
+        if (!configReader.hasKey(key))
+            return RC.RC_SUCCESS;
+        String threadModelStr = configReader.getParam(key);
+        if (threadModelStr.equalsIgnoreCase(ThreadModel.VIRTUAL.toStr())) {
+            workersPool = WorkerThreads.newVirtualThreadPool();
+            if (workersPool == null)
+                return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CONFIG_SEMANTIC_ERROR,
+                        "Virtual threads need Java 21 or newer");
+        }
+        else if (!threadModelStr.equalsIgnoreCase(ThreadModel.PLATFORM.toStr()))
+            return RC.RC_MANAGER_CONFIG_SEMANTIC_ERROR;
+        return RC.RC_SUCCESS;
+    }
 
-        return rc;
+    // Threads of thread model and tasks pool of the scheduler if there is one
+    private WorkerThreads createWorkerThreads() {
+        WorkerThreads workerThreads = workersPool != null ? WorkerThreads.pooled(workersPool) : WorkerThreads.platform();
+        return taskPool != null ? WorkerThreads.withTaskPool(workerThreads, taskPool) : workerThreads;
     }
 
-    private RC configureWorkers() {
-        RC rc = reader.setInputStream(fin);
-        if (!rc.isSuccess())
-            return rc;
+    // Every pipeline has its own workers, classes are checked in findClasses
+    private RC buildPipeline(ConfigReader configReader, WorkerThreads workerThreads) {
+        Pipeline.Builder builder = new Pipeline.Builder().setWorkerThreads(workerThreads);
+        try {
+            IReader reader = (IReader) readerClass.getDeclaredConstructor().newInstance();
+            builder.setReader(reader, configReader.getParam(ManagerConfigGrammar.ConfigParams.READER_CONFIG.toStr()));
+
+            String configsStr = configReader.getParam(ManagerConfigGrammar.ConfigParams.EXECUTORS_CONFIGS.toStr());
+            String[] configs = configsStr.split(configsSeparator);
+            if (configs.length != executorsClasses.size())
+                return RC.RC_MANAGER_CONFIG_SEMANTIC_ERROR;
+            for (int i = 0; i < configs.length; ++i) {
+                IExecutor executor = (IExecutor) executorsClasses.get(i).getDeclaredConstructor().newInstance();
+                builder.addExecutor(executor, configs[i].trim());
+                // offsets of the index would not be offsets in the file if the next executors change the data
+                if (i < configs.length - 1 && builder.getRC().isSuccess() && executor instanceof IBlockIndexWriter &&
+                        ((IBlockIndexWriter) executor).writesBlockIndex())
+                    return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CONFIG_SEMANTIC_ERROR,
+                            "Executor which writes block index must be the last one");
+            }
 
-        rc = writer.setOutputStream(fout);
-        if (!rc.isSuccess())
-            return rc;
+            IWriter writer = (IWriter) writerClass.getDeclaredConstructor().newInstance();
+            builder.setWriter(writer, configReader.getParam(ManagerConfigGrammar.ConfigParams.WRITER_CONFIG.toStr()));
+        } catch (Exception e) {
+            return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR, "Could not create workers");
+        }
+
+        pipeline = builder.build();
+        return builder.getRC();
+    }
 
-        executors.get(0).setProvider(reader);
-        for (int i = 1; i < executors.size(); ++i)
-            executors.get(i).setProvider(executors.get(i - 1));
+    private RC findJobs(ConfigReader configReader) {
+        String manifestKey = ManagerConfigGrammar.ConfigParams.BATCH_MANIFEST.toStr();
+        String inputKey = ManagerConfigGrammar.ConfigParams.BATCH_INPUT.toStr();
+        if (configReader.hasKey(manifestKey) == configReader.hasKey(inputKey))
+            return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CONFIG_SEMANTIC_ERROR,
+                    "Batch mode needs exactly one of " + manifestKey + " and " + inputKey);
+
+        if (configReader.hasKey(manifestKey))
+            return BatchRunner.readManifest(configReader.getParam(manifestKey), jobs);
+        return BatchRunner.findInputs(configReader.getParam(inputKey),
+                configReader.getParam(ManagerConfigGrammar.ConfigParams.BATCH_OUTPUT_DIR.toStr()),
+                configReader.getParam(ManagerConfigGrammar.ConfigParams.BATCH_OUTPUT_SUFFIX.toStr()),
+                jobs);
+    }
 
-        writer.setProvider(executors.get(executors.size() - 1));
+    // Pipelines of the batch share one pool of threads, so threads are not created for every file
+    private RC buildPipelines(ConfigReader configReader) {
+        int numOfPipelines = 1;
+        String key = ManagerConfigGrammar.ConfigParams.MAX_PIPELINES.toStr();
+        if (configReader.hasKey(key)) {
+            try {
+                numOfPipelines = Integer.parseInt(configReader.getParam(key));
+            } catch (NumberFormatException e) {
+                return RC.RC_MANAGER_CONFIG_SEMANTIC_ERROR;
+            }
+            if (numOfPipelines < 1)
+                return RC.RC_MANAGER_CONFIG_SEMANTIC_ERROR;
+        }
+        // there is no sense in pipelines which never get a job
+        numOfPipelines = Integer.max(1, Integer.min(numOfPipelines, jobs.size()));
+
+        if (workersPool == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            workersPool = Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "Worker" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        WorkerThreads workerThreads = createWorkerThreads();
 
+        for (int i = 0; i < numOfPipelines; ++i) {
+            RC rc = buildPipeline(configReader, workerThreads);
+            if (!rc.isSuccess()) {
+                for (Pipeline built : pipelines)
+                    built.close();
+                pipelines.clear();
+                return rc;
+            }
+            pipelines.add(pipeline);
+        }
         return RC.RC_SUCCESS;
     }
 
@@ -139,81 +367,117 @@ public class Manager implements IConfigurable {
         } catch (IOException ignored) {}
 
         for (ManagerConfigGrammar.ConfigParams param : ManagerConfigGrammar.ConfigParams.values()) {
-            if (!configReader.hasKey(param.toStr()))
+            if (param.isRequired() && !configReader.hasKey(param.toStr()))
                 return new RC(RC.RCWho.MANAGER,
                         RC.RCType.CODE_CONFIG_SEMANTIC_ERROR,
                         "Config must contain parameter " + param.toStr());
         }
 
+        isBatch = configReader.hasKey(ManagerConfigGrammar.ConfigParams.BATCH_MANIFEST.toStr()) ||
+                configReader.hasKey(ManagerConfigGrammar.ConfigParams.BATCH_INPUT.toStr());
+        if (!isBatch) {
+            for (ManagerConfigGrammar.ConfigParams param : new ManagerConfigGrammar.ConfigParams[] {
+                    ManagerConfigGrammar.ConfigParams.INPUT_FILE, ManagerConfigGrammar.ConfigParams.OUTPUT_FILE }) {
+                if (!configReader.hasKey(param.toStr()))
+                    return new RC(RC.RCWho.MANAGER,
+                            RC.RCType.CODE_CONFIG_SEMANTIC_ERROR,
+                            "Config must contain parameter " + param.toStr());
+            }
+        }
+
         rc = findClasses(configReader);
         if (!rc.isSuccess())
             return rc;
 
-        rc = openStreams(configReader);
+        rc = findScheduler(configReader);
         if (!rc.isSuccess())
             return rc;
 
-        rc = setWorkersConfigs(configReader);
+        rc = findThreadModel(configReader);
         if (!rc.isSuccess())
             return rc;
 
-        rc = configureWorkers();
+        rc = findCheckpointer(configReader);
         if (!rc.isSuccess())
             return rc;
 
-        return RC.RC_SUCCESS;
-    }
-
-    public RC runPipeline() {
-        Thread readerThread = new Thread (reader, "Reader");
-        Thread writerThread = new Thread(writer, "Writer");
+        rc = findRange(configReader);
+        if (!rc.isSuccess())
+            return rc;
 
-        readerThread.start();
-        for (IExecutor executor: executors)
-            executor.runThreads();
-        writerThread.start();
+        if (isBatch) {
+            rc = findJobs(configReader);
+            if (!rc.isSuccess())
+                return rc;
 
-        try {
-            readerThread.join();
-            for (IExecutor executor : executors)
-                executor.joinThreads();
-            writerThread.join();
-        } catch (InterruptedException e) {
-            handleError(new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR, "Could not join threads!"));
+            return buildPipelines(configReader);
         }
 
-        RC resRc = RC.RC_SUCCESS;
-        RC rc = reader.getRC();
+        rc = buildPipeline(configReader, createWorkerThreads());
+        if (!rc.isSuccess())
+            return rc;
+
+        // stages are checked before the output is opened, so a rejected config doesn't cut the output
+        if (checkpointer != null)
+            rc = pipeline.setCheckpointer(checkpointer);
+        if (rc.isSuccess())
+            rc = openStreams(configReader);
         if (!rc.isSuccess()) {
-            resRc = rc;
-            handleError(rc);
+            pipeline.close();
+            return rc;
         }
 
-        for (IExecutor executor : executors) {
-            rc = executor.getRC();
-            if (!rc.isSuccess()) {
-                resRc = rc;
-                handleError(rc);
-            }
+        if (checkpointer != null)
+            checkpointer.setOutput(fout);
+        return RC.RC_SUCCESS;
+    }
+
+    public RC runPipeline() {
+        RC resRc;
+        if (isBatch) {
+            resRc = new BatchRunner(pipelines).run(jobs);
         }
+        else {
+            if (blockRange != null)
+                resRc = pipeline.run(blockRange.wrapInput(fin), blockRange.wrapOutput(fout));
+            else
+                resRc = pipeline.run(fin, fout);
 
-        rc = writer.getRC();
-        if (!rc.isSuccess()) {
-            resRc = rc;
-            handleError(rc);
+            try {
+                fin.close();
+                fout.close();
+            } catch (IOException e) {
+                resRc = new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR, "Could not close files");
+                handleError(resRc);
+            }
         }
 
-        try {
-            fin.close();
-            fout.close();
-        } catch (IOException e) {
-            resRc = new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR, "Could not close files");
-           handleError(resRc);
+        if (workersPool != null)
+            workersPool.shutdown();
+        if (taskPool != null)
+            taskPool.shutdown();
+
+        ArrayList<Pipeline> finished = isBatch ? pipelines : new ArrayList<>();
+        if (!isBatch)
+            finished.add(pipeline);
+        for (Pipeline finishedPipeline : finished) {
+            for (StageMetrics metrics : finishedPipeline.getMetrics())
+                logInfo(metrics.summary());
+            finishedPipeline.close();
         }
 
+        BufferPool pool = BufferPool.getShared();
+        logInfo("Buffer pool: " + pool.getHits() + " hits, " + pool.getMisses() + " misses");
+
         return resRc;
     }
 
+    static public void logInfo(String msg) {
+        System.out.println(msg);
+        if (logger != null)
+            logger.info(msg);
+    }
+
     static public void handleError(RC rc) {
         String errMsg = "Error in " + rc.who + ": " + rc.info;
         System.out.println(errMsg);
@@ -2,19 +2,43 @@ package com.pipeline;
 
 public class ManagerConfigGrammar implements IConfigGrammar {
     public enum ConfigParams {
-        INPUT_FILE ("INPUT_FILE"),
-        OUTPUT_FILE ("OUTPUT_FILE"),
+        // input and output files are not needed in batch mode
+        INPUT_FILE ("INPUT_FILE", false),
+        OUTPUT_FILE ("OUTPUT_FILE", false),
         READER_NAME ("READER_NAME"),
         WRITER_NAME ("WRITER_NAME"),
         EXECUTORS_NAMES ("EXECUTORS_NAMES"),
         READER_CONFIG ("READER_CONFIG"),
         EXECUTORS_CONFIGS ("EXECUTORS_CONFIGS"),
         WRITER_CONFIG ("WRITER_CONFIG"),
-        LOG_FILE ("LOG_FILE");
+        LOG_FILE ("LOG_FILE"),
+        BATCH_MANIFEST ("BATCH_MANIFEST", false),
+        BATCH_INPUT ("BATCH_INPUT", false),
+        BATCH_OUTPUT_DIR ("BATCH_OUTPUT_DIR", false),
+        BATCH_OUTPUT_SUFFIX ("BATCH_OUTPUT_SUFFIX", false),
+        MAX_PIPELINES ("MAX_PIPELINES", false),
+        SCHEDULER ("SCHEDULER", false),
+        THREAD_MODEL ("THREAD_MODEL", false),
+        // checkpoints are made only for a single job
+        CHECKPOINT_INTERVAL ("CHECKPOINT_INTERVAL", false),
+        RESUME ("RESUME", false),
+        // range of the original data decoded from the file with block index, only for a single job
+        RANGE_OFFSET ("RANGE_OFFSET", false),
+        RANGE_LENGTH ("RANGE_LENGTH", false);
 
         private final String str;
+        private final boolean required;
         ConfigParams(String str) {
+            this(str, true);
+        }
+
+        ConfigParams(String str, boolean required) {
             this.str = str;
+            this.required = required;
+        }
+
+        public boolean isRequired() {
+            return required;
         }
 
         public String toStr() {
@@ -0,0 +1,321 @@
+package com.pipeline;
+
+import com.java_polytech.pipeline_interfaces.*;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Configured chain reader -> executors -> writer which can process many inputs one after another
+// without reading configs and loading classes again. Jobs must not run concurrently on the same pipeline.
+// Pipeline which is not needed anymore must be closed, otherwise JMX keeps its metrics and workers.
+public class Pipeline {
+    private final IReader reader;
+    private final ArrayList<IExecutor> executors;
+    private final IWriter writer;
+    private final WorkerThreads workerThreads;
+    // metrics of workers which collect them, in the order of stages
+    private final ArrayList<StageMetrics> metrics = new ArrayList<>();
+    // names of the metrics registered in JMX, they are unregistered by close()
+    private final ArrayList<ObjectName> metricsNames = new ArrayList<>();
+    private Checkpointer checkpointer;
+    // stages in the order of the pipeline, they are checked by setCheckpointer
+    private final ArrayList<ICheckpointable> checkpointables = new ArrayList<>();
+
+    private static final AtomicInteger pipelinesNumber = new AtomicInteger();
+
+    public static class Builder {
+        private IReader reader;
+        private final ArrayList<IExecutor> executors = new ArrayList<>();
+        private IWriter writer;
+        private WorkerThreads workerThreads = WorkerThreads.platform();
+        private RC rc = RC.RC_SUCCESS;
+
+        // Worker must be already configured
+        public Builder setReader(IReader reader) {
+            this.reader = reader;
+            return this;
+        }
+
+        public Builder setReader(IReader reader, String config) {
+            configure(reader, config);
+            return setReader(reader);
+        }
+
+        // Executors are placed in the pipeline in the order of adding
+        public Builder addExecutor(IExecutor executor) {
+            executors.add(executor);
+            return this;
+        }
+
+        public Builder addExecutor(IExecutor executor, String config) {
+            configure(executor, config);
+            return addExecutor(executor);
+        }
+
+        public Builder setWriter(IWriter writer) {
+            this.writer = writer;
+            return this;
+        }
+
+        public Builder setWriter(IWriter writer, String config) {
+            configure(writer, config);
+            return setWriter(writer);
+        }
+
+        // Several pipelines can share one pool of threads
+        public Builder setWorkerThreads(WorkerThreads workerThreads) {
+            this.workerThreads = workerThreads;
+            return this;
+        }
+
+        private void configure(IConfigurable worker, String config) {
+            if (rc.isSuccess())
+                rc = worker.setConfig(config);
+        }
+
+        // The first error of workers configuration
+        public RC getRC() {
+            return rc;
+        }
+
+        // Returns null if some worker was not configured, the reason is in getRC()
+        public Pipeline build() {
+            if (rc.isSuccess() && (reader == null || writer == null))
+                rc = RC.RC_MANAGER_CONFIG_SEMANTIC_ERROR;
+            if (!rc.isSuccess())
+                return null;
+            return new Pipeline(reader, executors, writer, workerThreads);
+        }
+    }
+
+    private Pipeline(IReader reader, ArrayList<IExecutor> executors, IWriter writer, WorkerThreads workerThreads) {
+        this.reader = reader;
+        this.executors = new ArrayList<>(executors);
+        this.writer = writer;
+        this.workerThreads = workerThreads;
+
+        ArrayList<Object> stages = new ArrayList<>();
+        stages.add(reader);
+        stages.addAll(executors);
+        stages.add(writer);
+        for (Object stage : stages) {
+            if (stage instanceof IMetricsSource)
+                metrics.add(((IMetricsSource) stage).getMetrics());
+        }
+        for (int i = 0; i < stages.size() - 1; ++i) {
+            if (stages.get(i) instanceof IConsumerMetricsAware && stages.get(i + 1) instanceof IMetricsSource)
+                ((IConsumerMetricsAware) stages.get(i)).setConsumerMetrics(((IMetricsSource) stages.get(i + 1)).getMetrics());
+        }
+        registerMetrics();
+    }
+
+    // Metrics are seen in JMX as com.pipeline:type=Stage,pipeline=<number of pipeline>,stage=<index>-<name>
+    private void registerMetrics() {
+        int number = pipelinesNumber.getAndIncrement();
+        for (int i = 0; i < metrics.size(); ++i) {
+            try {
+                ObjectName name = new ObjectName("com.pipeline:type=Stage,pipeline=" + number +
+                        ",stage=" + i + "-" + metrics.get(i).getStage());
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics.get(i), name);
+                metricsNames.add(name);
+            } catch (JMException e) {
+                // metrics are still available by getMetrics
+                Manager.handleError(new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR,
+                        "Could not register metrics of " + metrics.get(i).getStage()));
+            }
+        }
+    }
+
+    // Unregisters metrics from JMX, the pipeline can't be used after it.
+    // run() returns only after all stages stop, so it's safe to close the pipeline after any run.
+    public void close() {
+        for (ObjectName name : metricsNames) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException e) {
+                Manager.handleError(new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR,
+                        "Could not unregister metrics " + name));
+            }
+        }
+        metricsNames.clear();
+    }
+
+    public ArrayList<StageMetrics> getMetrics() {
+        return metrics;
+    }
+
+    // Jobs make checkpoints and resume from the loaded one, all stages must support checkpoints with their configs
+    public RC setCheckpointer(Checkpointer checkpointer) {
+        ArrayList<Object> stages = new ArrayList<>();
+        stages.add(reader);
+        stages.addAll(executors);
+        stages.add(writer);
+        checkpointables.clear();
+        for (Object stage : stages) {
+            if (!(stage instanceof ICheckpointable))
+                return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CONFIG_SEMANTIC_ERROR,
+                        stage.getClass().getSimpleName() + " does not support checkpoints");
+            if (!((ICheckpointable) stage).canCheckpoint())
+                return new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CONFIG_SEMANTIC_ERROR,
+                        stage.getClass().getSimpleName() + " does not support checkpoints with its config");
+            checkpointables.add((ICheckpointable) stage);
+        }
+        this.checkpointer = checkpointer;
+        return RC.RC_SUCCESS;
+    }
+
+    // File channels are given to reader and writer as files, so their file modes work with them
+    public RC run(ReadableByteChannel input, WritableByteChannel output) {
+        InputStream inputStream = input instanceof FileChannel ?
+                FileChannelStreams.newInputStream((FileChannel) input) : Channels.newInputStream(input);
+        OutputStream outputStream = output instanceof FileChannel ?
+                FileChannelStreams.newOutputStream((FileChannel) output) : Channels.newOutputStream(output);
+        return run(inputStream, outputStream);
+    }
+
+    // Processes the whole input, streams are not closed.
+    // If the calling thread is interrupted, the job is cancelled and run() returns after all stages stop,
+    // with the interrupt status of the thread set.
+    public RC run(InputStream input, OutputStream output) {
+        RC rc = connectWorkers(input, output);
+        if (!rc.isSuccess()) {
+            Manager.handleError(rc);
+            return rc;
+        }
+
+        if (checkpointer != null) {
+            rc = checkpointer.start(checkpointables);
+            if (!rc.isSuccess()) {
+                checkpointer.stop();
+                Manager.handleError(rc);
+                return rc;
+            }
+        }
+
+        WorkerThreads.Worker readerThread = start(reader, "Reader");
+        WorkerThreads previousThreads = WorkerThreads.current();
+        WorkerThreads.setCurrent(workerThreads);
+        try {
+            for (IExecutor executor : executors)
+                executor.runThreads();
+        } finally {
+            WorkerThreads.setCurrent(previousThreads);
+        }
+        WorkerThreads.Worker writerThread = start(writer, "Writer");
+
+        RC resRc = RC.RC_SUCCESS;
+        try {
+            readerThread.join();
+            for (IExecutor executor : executors)
+                executor.joinThreads();
+            writerThread.join();
+        } catch (InterruptedException e) {
+            resRc = new RC(RC.RCWho.MANAGER, RC.RCType.CODE_CUSTOM_ERROR, "Job is interrupted");
+            Manager.handleError(resRc);
+            cancel(readerThread, writerThread);
+            Thread.currentThread().interrupt();
+        }
+
+        rc = reader.getRC();
+        if (!rc.isSuccess()) {
+            resRc = rc;
+            Manager.handleError(rc);
+        }
+
+        for (IExecutor executor : executors) {
+            rc = executor.getRC();
+            if (!rc.isSuccess()) {
+                resRc = rc;
+                Manager.handleError(rc);
+            }
+        }
+
+        rc = writer.getRC();
+        if (!rc.isSuccess()) {
+            resRc = rc;
+            Manager.handleError(rc);
+        }
+
+        if (checkpointer != null) {
+            checkpointer.stop();
+            // failed job is resumed from the last checkpoint
+            if (resRc.isSuccess()) {
+                rc = checkpointer.remove();
+                if (!rc.isSuccess()) {
+                    resRc = rc;
+                    Manager.handleError(rc);
+                }
+            }
+        }
+
+        return resRc;
+    }
+
+    // Stops the job when the thread running it is interrupted: every provider sees an error of its consumer,
+    // so stages finish their output one after another. The stages are joined even if the thread is interrupted
+    // again, because the pipeline may be closed or run again only after they stop.
+    private void cancel(WorkerThreads.Worker readerThread, WorkerThreads.Worker writerThread) {
+        reader.reportError();
+        for (IExecutor executor : executors)
+            executor.reportError();
+
+        ArrayList<WorkerThreads.Worker> stages = new ArrayList<>();
+        stages.add(readerThread);
+        for (IExecutor executor : executors)
+            stages.add(executor::joinThreads);
+        stages.add(writerThread);
+        for (WorkerThreads.Worker stage : stages) {
+            while (true) {
+                try {
+                    stage.join();
+                    break;
+                } catch (InterruptedException e) {
+                    // the interrupt is restored by run()
+                }
+            }
+        }
+    }
+
+    // Worker sees threads of the pipeline as current, so it can start its own threads in the same way
+    private WorkerThreads.Worker start(Runnable worker, String name) {
+        return workerThreads.start(() -> {
+            WorkerThreads previousThreads = WorkerThreads.current();
+            WorkerThreads.setCurrent(workerThreads);
+            try {
+                worker.run();
+            } finally {
+                WorkerThreads.setCurrent(previousThreads);
+            }
+        }, name);
+    }
+
+    // Workers start a new job when they get new streams and providers
+    private RC connectWorkers(InputStream input, OutputStream output) {
+        RC rc = reader.setInputStream(input);
+        if (!rc.isSuccess())
+            return rc;
+
+        rc = writer.setOutputStream(output);
+        if (!rc.isSuccess())
+            return rc;
+
+        IProvider provider = reader;
+        for (IExecutor executor : executors) {
+            rc = executor.setProvider(provider);
+            if (!rc.isSuccess())
+                return rc;
+            provider = executor;
+        }
+
+        return writer.setProvider(provider);
+    }
+}
@@ -5,7 +5,11 @@ public class ExecutorConfigGrammar implements IConfigGrammar {
         BUFFER_SIZE ("BUFFER_SIZE"),
         MODE ("MODE"),
         NUM_OF_THREADS("NUM_OF_THREADS"),
-        MAX_PACKAGES_NUM("MAX_PACKAGES_NUM");
+        MAX_PACKAGES_NUM("MAX_PACKAGES_NUM"),
+        FRAMED("FRAMED"),
+        ADAPTIVE("ADAPTIVE"),
+        FORMAT("FORMAT"),
+        INDEXED("INDEXED");
 
         private final String str;
         ConfigParams(String str) {
@@ -0,0 +1,30 @@
+package com.pipeline;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+// ByteArrayOutputStream which gives its content in an array from the pool instead of a new one
+// and lets coders write right into its array
+class PackageOutputStream extends ByteArrayOutputStream {
+    PackageOutputStream(int size) {
+        super(size);
+    }
+
+    // Returns the internal array with at least size free bytes after size(),
+    // the written bytes must be committed by setSize()
+    byte[] reserve(int size) {
+        if (buf.length - count < size)
+            buf = Arrays.copyOf(buf, Integer.max(buf.length * 2, count + size));
+        return buf;
+    }
+
+    void setSize(int size) {
+        count = size;
+    }
+
+    byte[] toPackage(BufferPool pool) {
+        byte[] out = pool.get(count);
+        System.arraycopy(buf, 0, out, 0, count);
+        return out;
+    }
+}
@@ -0,0 +1,138 @@
+package com.pipeline;
+
+import java.util.Arrays;
+
+// Decoding of RLEEncoder format right into the array of PackageOutputStream.
+// Output is sized by a quick pass over counters, then runs are filled and literals are copied without per-byte calls.
+// A token can be split between packages, its rest is decoded with the next package.
+final class RLEDecoder {
+    // if the sequence of different symbols to decode is taller than current input buffer
+    private int restToDecode = 0;
+    // if there is a count of the end of input buffer and encoded symbol if next buffer
+    private int prevCount = 0;
+    // decoded size of the tokens before the last end found by decodedEnd()
+    private long endSize = 0;
+
+    boolean isFinished() {
+        return restToDecode == 0 && prevCount == 0;
+    }
+
+    // Token left by the previous package, for checkpoints
+    String saveState() {
+        return restToDecode + ":" + prevCount;
+    }
+
+    // Throws IllegalArgumentException if the state is broken
+    void restoreState(String state) {
+        String[] values = state.split(":");
+        if (values.length != 2)
+            throw new IllegalArgumentException("Invalid RLE decoder state " + state);
+        int rest = Integer.parseInt(values[0]);
+        int count = Integer.parseInt(values[1]);
+        // a literal has at most 128 bytes, a run has at most 127 bytes
+        if (rest < 0 || count < 0 || rest > 128 || count > 127 || rest > 0 && count > 0)
+            throw new IllegalArgumentException("Invalid RLE decoder state " + state);
+        restToDecode = rest;
+        prevCount = count;
+    }
+
+    // Position after the tokens of bytes[start, bytes.length) which decode to at most space bytes,
+    // taking into account the token left by the previous package. A token is never split by it,
+    // so a package of runs (up to 64 times more bytes) is decoded by parts of whole tokens.
+    private int decodedEnd(byte[] bytes, int start, long space) {
+        long size = 0;
+        int i = start;
+        endSize = 0;
+        if (prevCount > 0) {
+            if (i < bytes.length) {
+                if (prevCount > space)
+                    return start;
+                size += prevCount;
+                ++i;
+            }
+        }
+        else if (restToDecode > 0) {
+            int count = Integer.min(bytes.length - i, restToDecode);
+            if (count > space)
+                return start;
+            size += count;
+            i += count;
+        }
+
+        while (i < bytes.length) {
+            int count = bytes[i];
+            int next;
+            if (count > 0) {
+                // the byte of the run may be in the next package
+                if (i + 1 == bytes.length)
+                    count = 0;
+                next = i + 2;
+            }
+            else {
+                count = Integer.min(-count, bytes.length - i - 1);
+                next = i + 1 + count;
+            }
+            if (size + count > space)
+                break;
+            size += count;
+            i = next;
+        }
+        endSize = size;
+        return Integer.min(i, bytes.length);
+    }
+
+    // Decodes whole tokens while the buffer is not longer than maxSize.
+    // Returns the position of the first token which is not decoded, bytes.length if the package is decoded.
+    int decode(byte[] bytes, int start, PackageOutputStream buffer, long maxSize) {
+        /* if algorithm was written correctly then we must
+           write the rest of different symbols from previous buffer
+           or the first symbol prevCount times, but not at the same time */
+        assert(prevCount >= 0 && restToDecode == 0 ||
+                prevCount == 0 && restToDecode >= 0);
+
+        int end = decodedEnd(bytes, start, maxSize - buffer.size());
+        if (end == start)
+            return start;
+        byte[] out = buffer.reserve((int) endSize);
+        int o = buffer.size();
+        int i = start;
+        if (prevCount > 0) {
+            if (i < bytes.length) {
+                Arrays.fill(out, o, o + prevCount, bytes[i]);
+                o += prevCount;
+                ++i;
+                prevCount = 0;
+            }
+        }
+        else if (restToDecode > 0) {
+            int count = Integer.min(bytes.length - i, restToDecode);
+            System.arraycopy(bytes, i, out, o, count);
+            o += count;
+            i += count;
+            restToDecode -= count;
+        }
+
+        while (i < end) {
+            int count = bytes[i];
+            if (count > 0) {
+                if (i + 1 == bytes.length) {
+                    prevCount = count;
+                    break;
+                }
+                Arrays.fill(out, o, o + count, bytes[i + 1]);
+                o += count;
+                i += 2;
+            }
+            else {
+                ++i;
+                int inThisBuffer = Integer.min(-count, bytes.length - i);
+                restToDecode = -count - inThisBuffer;
+                System.arraycopy(bytes, i, out, o, inThisBuffer);
+                o += inThisBuffer;
+                i += inThisBuffer;
+            }
+        }
+        buffer.setSize(o);
+        return end;
+    }
+}
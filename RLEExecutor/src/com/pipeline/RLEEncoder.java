@@ -0,0 +1,55 @@
+package com.pipeline;
+
+import java.nio.ByteBuffer;
+
+// RLE encoding into a preallocated array.
+// Positive counter n means that the next byte is repeated n times (n <= 127),
+// negative counter -n means that the next n bytes are different (n <= 128).
+final class RLEEncoder {
+    private static final int MAX_REPEATS = Byte.MAX_VALUE;
+    private static final int MAX_SINGLES = -Byte.MIN_VALUE;
+
+    private RLEEncoder() {}
+
+    // The worst case is a single byte followed by two equal bytes: 3 input bytes take 4 bytes of output,
+    // plus the last sequence of one byte which takes 2 bytes
+    static int maxEncodedSize(int length) {
+        return length + length / 3 + 2;
+    }
+
+    // Encodes src[from, to) into dst starting with dstPos, dst must have at least maxEncodedSize(to - from) bytes.
+    // Returns position in dst after the encoded data.
+    static int encode(byte[] src, int from, int to, byte[] dst, int dstPos) {
+        ByteBuffer words = RLERunScanner.wrap(src);
+        int i = from;
+        while (i < to) {
+            if (i + 1 == to) {
+                dst[dstPos++] = 1;
+                dst[dstPos++] = src[i];
+                break;
+            }
+
+            byte sym = src[i];
+            if (src[i + 1] == sym) {
+                int end = Integer.min(to, i + MAX_REPEATS);
+                int j = RLERunScanner.findRunEnd(src, words, i + 2, end, sym);
+                dst[dstPos++] = (byte) (j - i);
+                dst[dstPos++] = sym;
+                i = j;
+            }
+            else {
+                int end = Integer.min(to, i + MAX_SINGLES);
+                int j = RLERunScanner.findRepeat(src, words, i + 2, end);
+                // the last single byte starts the sequence of the same bytes
+                if (j < end)
+                    --j;
+                int count = j - i;
+                dst[dstPos++] = (byte) -count;
+                System.arraycopy(src, i, dst, dstPos, count);
+                dstPos += count;
+                i = j;
+            }
+        }
+        return dstPos;
+    }
+}
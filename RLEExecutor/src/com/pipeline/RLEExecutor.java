@@ -2,13 +2,9 @@ package com.pipeline;
 
 import com.java_polytech.pipeline_interfaces.*;
 
-import java.io.ByteArrayOutputStream;
-import java.util.ArrayList;
-import java.util.concurrent.ConcurrentHashMap;
-
-public class RLEExecutor implements IExecutor {
-    final private TYPE[] supportedTypes = { TYPE.BYTE_ARRAY };
+import java.util.Arrays;
 
+public class RLEExecutor extends ParallelExecutor implements IBlockIndexWriter {
     private enum Mode {
         ENCODE ("ENCODE"),
         DECODE ("DECODE");
@@ -22,235 +18,486 @@ public class RLEExecutor implements IExecutor {
         }
     }
 
+    private enum Format {
+        // signed byte counter, runs up to 127 bytes and literals up to 128 bytes
+        BYTE ("BYTE"),
+        // varint lengths of any size, see RLEVarintEncoder
+        VARINT ("VARINT");
+        private final String str;
+
+        Format(String str) {
+            this.str = str;
+        }
+        String toStr() {
+            return str;
+        }
+    }
+
     // Config
     private Mode mode;
+    private Format format = Format.BYTE;
     private int bufferSize;
-    private IProvider provider;
-    private IMediator mediator;
-    private final ArrayList<Thread> executorsThreads = new ArrayList<>();
-    private int numOfThreads;
-    private long maxPackagesNum;
+    // encoded packages are wrapped into RLEFrame, so decoder can work in several threads
+    private boolean isFramed = false;
+    // package which RLE doesn't make smaller is stored as a raw frame
+    private boolean isAdaptive = false;
+    // BlockIndex of the frames is written after them, so a range of data can be decoded without the frames before it
+    private boolean isIndexed = false;
+    // frames given to consumer, null if the index is not needed or it's given already
+    private BlockIndex index;
+    // part of the index which is given to consumer next
+    private int nextIndexPart;
+
+    public RLEExecutor() {
+        super("RLEExecutor");
+    }
 
-    // Error in this executor or in consumer
-    private RC rc = RC.RC_SUCCESS;
-    private boolean isConsumerError;
+    // Codes package into the buffer of its thread
+    private interface IBufferCoder {
+        RC run(byte[] bytes);
+
+        // State which is carried to the next package, null if the coder has no such state
+        default String saveState() {
+            return null;
+        }
 
-    final private ConcurrentHashMap<Long, byte[]> packages = new ConcurrentHashMap<>();
+        // Throws IllegalArgumentException if the coder can't have this state
+        default void restoreState(String state) {
+            throw new IllegalArgumentException("Coder has no state");
+        }
 
-    // to save right order of packages
-    private long inputPackageNumber = 0;
-    private long outPackageNumber = 0;
+        // Package is not coded whole because the buffer is full, runMore() codes its rest after the buffer is taken
+        default boolean hasMore() {
+            return false;
+        }
 
-    private interface ICoder {
-        RC run(byte[] bytes);
+        default RC runMore() {
+            return RC.RC_SUCCESS;
+        }
     }
 
-    private class RLEExecutorRunnable implements Runnable {
-        private final ByteArrayOutputStream buffer;
-        private final ICoder coder;
-        private final IMediator mediator;
-
-        RLEExecutorRunnable(int bufferSize, Mode mode, IMediator mediator) {
-            buffer = new ByteArrayOutputStream(bufferSize);
-            coder = mode == Mode.ENCODE ? new Encoder() : new Decoder();
-            this.mediator = mediator;
-        }
-
-        private class Encoder implements ICoder {
-            private byte prevByte = 0;
-            private byte repeatingByte = 0;
-            private byte counter = 0;
-            private int startOfSingles = 0;
-
-            // helper method
-            // set counter, repeatingByte and startOfSingles values when new sequence of
-            // the same or different symbols starts
-            private int startWith(int i, byte[] bytes) {
-                if (i >= bytes.length) {
-                    counter = 0;
-                    return i;
-                }
-
-                if (i + 1 == bytes.length) {
-                    counter = 1;
-                    repeatingByte = bytes[i];
-                    return i + 1;
-                }
+    // Decoder which can stop at the end of any package and continue with the next one
+    private interface IDecoder {
+        void decode(byte[] bytes, int start);
 
-                if (bytes[i + 1] == bytes[i]) {
-                    counter = 2;
-                    repeatingByte = bytes[i + 1];
-                }
-                else {
-                    counter = -2;
-                    startOfSingles = i;
-                }
+        boolean isFinished();
+    }
 
-                prevByte = bytes[i + 1];
+    private class RLECoder implements ICoder {
+        private final PackageOutputStream buffer;
+        private final IBufferCoder coder;
+
+        RLECoder() {
+            buffer = new PackageOutputStream(bufferSize);
+            if (mode == Mode.ENCODE)
+                coder = isFramed ? new FramedEncoder() : newEncoder();
+            else if (isFramed)
+                coder = new FramedDecoder();
+            else
+                coder = format == Format.VARINT ? new VarintDecoder(true) : new Decoder(true);
+        }
 
-                return i + 2;
+        private class Encoder implements IBufferCoder {
+            @Override
+            public RC run(byte[] bytes) {
+                if (bytes == null)
+                    return RC.RC_SUCCESS;
+                byte[] out = buffer.reserve(RLEEncoder.maxEncodedSize(bytes.length));
+                buffer.setSize(RLEEncoder.encode(bytes, 0, bytes.length, out, buffer.size()));
+                return RC.RC_SUCCESS;
             }
+        }
+
+        private IBufferCoder newEncoder() {
+            return format == Format.VARINT ? new VarintEncoder() : new Encoder();
+        }
 
+        private class VarintEncoder implements IBufferCoder {
+            @Override
             public RC run(byte[] bytes) {
                 if (bytes == null)
                     return RC.RC_SUCCESS;
-                int i = startWith(0, bytes);
-                for (; i < bytes.length; ++i) {
-                    if (counter == Byte.MAX_VALUE) {
-                        buffer.write(counter);
-                        buffer.write(repeatingByte);
-                        i = startWith(i, bytes);
-                    }
-                    if (counter == Byte.MIN_VALUE) {
-                        buffer.write(counter);
-                        buffer.write(bytes, startOfSingles, -counter);
-                        i = startWith(i, bytes);
-                    }
+                byte[] out = buffer.reserve(RLEVarintEncoder.maxEncodedSize(bytes.length));
+                buffer.setSize(RLEVarintEncoder.encode(bytes, 0, bytes.length, out, buffer.size()));
+                return RC.RC_SUCCESS;
+            }
+        }
 
-                    if (i >= bytes.length)
-                        break;
-
-                    if (bytes[i] == prevByte) {
-                        if (counter > 0)
-                            ++counter;
-                        else {
-                            buffer.write((byte) (counter + 1));
-                            buffer.write(bytes, startOfSingles, -counter - 1);
-                            counter = 2;
-                            repeatingByte = bytes[i];
-                        }
-                    }
-                    else {
-                        if (counter > 0) {
-                            buffer.write(counter);
-                            buffer.write(repeatingByte);
-                            i = startWith(i, bytes) - 1;
-                        }
-                        else {
-                            --counter;
-                        }
-                    }
-                    prevByte = bytes[i];
-                }
+        private class Decoder implements IBufferCoder, IDecoder {
+            private final RLEDecoder decoder = new RLEDecoder();
+            private boolean isInvalid = false;
+            // output of one buffer or frame can't be longer
+            private long maxSize = FrameSplitter.MAX_PACKAGE_SIZE;
+            // longer output of a package is given by parts, a frame with longer output is invalid
+            private final boolean isSplit;
+            // rest of the package which is decoded by the next part
+            private byte[] pending;
+            private int pendingPosition;
+
+            Decoder(boolean isSplit) {
+                this.isSplit = isSplit;
+            }
 
-                if (counter > 0) {
-                    buffer.write(counter);
-                    buffer.write(repeatingByte);
-                }
-                else if (counter < 0) {
-                    buffer.write(counter);
-                    buffer.write(bytes, startOfSingles, -counter);
-                }
+            @Override
+            public RC run(byte[] bytes) {
+                return run(bytes, 0);
+            }
 
+            private RC run(byte[] bytes, int start) {
+                if (bytes != null)
+                    decode(bytes, start);
+                if (isInvalid || bytes == null && !isFinished())
+                    return new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CUSTOM_ERROR, "Invalid RLE code or decoder use more than one thread!");
                 return RC.RC_SUCCESS;
             }
+
+            @Override
+            public boolean hasMore() {
+                return pending != null;
+            }
+
+            @Override
+            public RC runMore() {
+                byte[] bytes = pending;
+                pending = null;
+                return run(bytes, pendingPosition);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return decoder.isFinished() && !isInvalid && pending == null;
+            }
+
+            @Override
+            public String saveState() {
+                return "rle:" + decoder.saveState();
+            }
+
+            @Override
+            public void restoreState(String state) {
+                if (!state.startsWith("rle:"))
+                    throw new IllegalArgumentException("Invalid RLE decoder state " + state);
+                decoder.restoreState(state.substring("rle:".length()));
+            }
+
+            @Override
+            public void decode(byte[] bytes, int start) {
+                if (isInvalid)
+                    return;
+                int position = decoder.decode(bytes, start, buffer, maxSize);
+                if (position == bytes.length)
+                    return;
+                if (isSplit) {
+                    pending = bytes;
+                    pendingPosition = position;
+                }
+                else
+                    isInvalid = true;
+            }
         }
 
-        private class Decoder implements ICoder {
-            // if the sequence of different symbols to decode is taller than current input buffer
-            private int restToDecode = 0;
-            // if there is a count of the end of input buffer and encoded symbol if next buffer
-            private int prevCount = 0;
+        // Decodes tokens of RLEVarintEncoder, a token can be split between packages
+        private class VarintDecoder implements IBufferCoder, IDecoder {
+            // varint which is being read
+            private long header = 0;
+            private int headerShift = 0;
+            // length of the run whose byte is in the next package or which doesn't fit into the buffer
+            private long runLength = 0;
+            private byte runByte;
+            private boolean isRunByteRead = false;
+            private long restLiterals = 0;
+            private boolean isInvalid = false;
+            // output of one buffer or frame can't be longer
+            private long maxSize = FrameSplitter.MAX_PACKAGE_SIZE;
+            // longer output of a package is given by parts, a frame with longer output is invalid
+            private final boolean isSplit;
+            // rest of the package which is decoded by the next part
+            private byte[] pending;
+            private int pendingPosition;
+
+            VarintDecoder(boolean isSplit) {
+                this.isSplit = isSplit;
+            }
 
             @Override
             public RC run(byte[] bytes) {
-            /* if algorithm was written correctly then we must
-           write the rest of different symbols from previous buffer
-           or the first symbol prevCount times, but not at the same time */
-                assert(prevCount >= 0 && restToDecode == 0 ||
-                        prevCount == 0 && restToDecode >= 0);
-
-                if (bytes == null) {
-                    if (restToDecode != 0 || prevCount != 0)
-                        return new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CUSTOM_ERROR, "Invalid RLE code or decoder use more than one thread!");
-                    return RC.RC_SUCCESS;
-                }
-                int i = 0;
-                if (prevCount > 0) {
-                    for (int j = 0; j < prevCount; ++j) {
-                        buffer.write(bytes[0]);
+                return run(bytes, 0);
+            }
+
+            private RC run(byte[] bytes, int start) {
+                if (bytes != null)
+                    decode(bytes, start);
+                if (isInvalid || bytes == null && !isFinished())
+                    return new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CUSTOM_ERROR, "Invalid RLE code or decoder use more than one thread!");
+                return RC.RC_SUCCESS;
+            }
+
+            @Override
+            public boolean hasMore() {
+                return pending != null;
+            }
+
+            @Override
+            public RC runMore() {
+                byte[] bytes = pending;
+                pending = null;
+                return run(bytes, pendingPosition);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return headerShift == 0 && runLength == 0 && restLiterals == 0 && !isInvalid && pending == null;
+            }
+
+            // checkpoint is made after the whole package, so the run byte is not read yet
+            @Override
+            public String saveState() {
+                return "varint:" + header + ":" + headerShift + ":" + runLength + ":" + restLiterals;
+            }
+
+            @Override
+            public void restoreState(String state) {
+                String[] values = state.split(":");
+                if (values.length != 5 || !values[0].equals("varint"))
+                    throw new IllegalArgumentException("Invalid RLE decoder state " + state);
+                header = Long.parseLong(values[1]);
+                headerShift = Integer.parseInt(values[2]);
+                runLength = Long.parseLong(values[3]);
+                restLiterals = Long.parseLong(values[4]);
+                if (header < 0 || headerShift < 0 || headerShift >= 7 * RLEVarintEncoder.MAX_VARINT_SIZE ||
+                        runLength < 0 || runLength > Integer.MAX_VALUE || restLiterals < 0)
+                    throw new IllegalArgumentException("Invalid RLE decoder state " + state);
+            }
+
+            @Override
+            public void decode(byte[] bytes, int start) {
+                int i = start;
+                while (!isInvalid && (i < bytes.length || isRunByteRead)) {
+                    long space = maxSize - buffer.size();
+                    if (space == 0 && (restLiterals > 0 || runLength > 0)) {
+                        if (isSplit) {
+                            pending = bytes;
+                            pendingPosition = i;
+                        }
+                        else
+                            isInvalid = true;
+                        return;
                     }
-                    ++i;
-                    prevCount = 0;
-                }
-                else if (restToDecode > 0) {
-                    int restInThisBuffer = Integer.min(bytes.length, restToDecode);
-                    buffer.write(bytes, 0, restInThisBuffer);
-                    i += restInThisBuffer;
-                    restToDecode -= restInThisBuffer;
-                }
 
-                while (i < bytes.length)  {
-                    int count = bytes[i];
-                    if (i + 1 == bytes.length) {
-                        restToDecode = count > 0 ? 0 : -count;
-                        prevCount =  Integer.max(count, 0);
-                        return RC.RC_SUCCESS;
+                    if (restLiterals > 0) {
+                        int count = (int) Long.min(Long.min(restLiterals, bytes.length - i), space);
+                        buffer.write(bytes, i, count);
+                        i += count;
+                        restLiterals -= count;
                     }
-                    if (count > 0) {
-                        byte sym =  bytes[i + 1];
-                        for (int j = 0; j < count; ++j) {
-                            buffer.write(sym);
+                    else if (runLength > 0) {
+                        if (!isRunByteRead) {
+                            runByte = bytes[i++];
+                            isRunByteRead = true;
                         }
-                        i += 2;
+                        int count = (int) Long.min(runLength, space);
+                        byte[] out = buffer.reserve(count);
+                        Arrays.fill(out, buffer.size(), buffer.size() + count, runByte);
+                        buffer.setSize(buffer.size() + count);
+                        runLength -= count;
+                        isRunByteRead = runLength > 0;
                     }
                     else {
-                        count = -count;
-                        ++i;
-                        if (count > bytes.length - i) {
-                            restToDecode = count - (bytes.length - i);
-                            count = bytes.length - i;
+                        byte b = bytes[i++];
+                        header |= (long) (b & 0x7F) << headerShift;
+                        headerShift += 7;
+                        if ((b & 0x80) != 0) {
+                            isInvalid = headerShift >= 7 * RLEVarintEncoder.MAX_VARINT_SIZE;
+                            continue;
                         }
-                        buffer.write(bytes, i, count);
-                        i += count;
+
+                        // encoder codes arrays, so a token is not longer than an array,
+                        // a frame is not longer than its original length
+                        long length = header >>> 1;
+                        long maxLength = isSplit ? Integer.MAX_VALUE : maxSize - buffer.size();
+                        if (length == 0 || length > maxLength)
+                            isInvalid = true;
+                        else if ((header & 1) != 0)
+                            runLength = length;
+                        else
+                            restLiterals = length;
+                        header = 0;
+                        headerShift = 0;
                     }
                 }
+            }
+        }
 
+        // Encodes package as a whole RLEFrame
+        private class FramedEncoder implements IBufferCoder {
+            private final IBufferCoder encoder = newEncoder();
+            private final byte[] header = new byte[RLEFrame.HEADER_SIZE];
+
+            @Override
+            public RC run(byte[] bytes) {
+                if (bytes == null)
+                    return RC.RC_SUCCESS;
+                RC sizeRc = FrameSplitter.checkPackageSize(bytes);
+                if (!sizeRc.isSuccess())
+                    return sizeRc;
+                // place for the header, it's filled in when the encoded length is known
+                buffer.write(header, 0, header.length);
+                RC rc = encoder.run(bytes);
+                if (!rc.isSuccess())
+                    return rc;
+
+                byte type = format == Format.VARINT ? RLEFrame.TYPE_VARINT : RLEFrame.TYPE_RLE;
+                if (isAdaptive && buffer.size() - RLEFrame.HEADER_SIZE >= bytes.length) {
+                    type = RLEFrame.TYPE_RAW;
+                    buffer.setSize(RLEFrame.HEADER_SIZE);
+                    buffer.write(bytes, 0, bytes.length);
+                }
+                RLEFrame.writeHeader(buffer.reserve(0), 0, type, buffer.size() - RLEFrame.HEADER_SIZE, bytes.length);
                 return RC.RC_SUCCESS;
             }
         }
 
-        @Override
-        public void run() {
-            byte[] data;
-            long thisPackageNumber;
-            while (true) {
-                synchronized (provider) { // all executors have the same provider
-                    // Executors need to save the order of packages, so they enumerate all input packages
-                    // Certainly, it must be an atomic operation (all executors must have different numbers)
-                    data = (byte[]) mediator.getData();
-                    thisPackageNumber = inputPackageNumber;
-                    // We don't need to process overflows because rang of long always is mush more than
-                    // current number of processing packages
-                    ++inputPackageNumber;
-                }
+        // Decodes one whole RLEFrame, so frames can be decoded in different threads
+        private class FramedDecoder implements IBufferCoder {
+            private final Decoder byteDecoder = new Decoder(false);
+            private final VarintDecoder varintDecoder = new VarintDecoder(false);
 
-                rc = coder.run(data);
-                if (!rc.isSuccess() || isConsumerError) {
-                    provider.reportError();
-                    packages.put(thisPackageNumber, new byte[0]);
-                    return;
-                }
+            @Override
+            public RC run(byte[] frame) {
+                if (frame == null)
+                    return RC.RC_SUCCESS;
 
-                // When file is very big and writer works slowly (e.g. because of small buffer)
-                // executor can accumulate too many packages, and it causes out of memory
-                while (packages.size() > maxPackagesNum) {
-                    try {
-                        Thread.sleep(1);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
+                if (RLEFrame.getType(frame, 0) == RLEFrame.TYPE_INDEX)
+                    return RC.RC_SUCCESS;
+                if (RLEFrame.getType(frame, 0) == RLEFrame.TYPE_RAW) {
+                    buffer.write(frame, RLEFrame.HEADER_SIZE, frame.length - RLEFrame.HEADER_SIZE);
+                    return RC.RC_SUCCESS;
                 }
-                packages.put(thisPackageNumber, buffer.toByteArray());
 
-                if (data == null) {
-                    packages.put(++inputPackageNumber, new byte[0]);
-                    return;
+                // format of the encoder is known from the frame, so the decoder doesn't need FORMAT
+                IDecoder decoder;
+                if (RLEFrame.getType(frame, 0) == RLEFrame.TYPE_VARINT) {
+                    varintDecoder.maxSize = RLEFrame.getOriginalLength(frame, 0);
+                    decoder = varintDecoder;
                 }
-
-                buffer.reset();
+                else {
+                    byteDecoder.maxSize = RLEFrame.getOriginalLength(frame, 0);
+                    decoder = byteDecoder;
+                }
+                decoder.decode(frame, RLEFrame.HEADER_SIZE);
+                if (!decoder.isFinished() || buffer.size() != RLEFrame.getOriginalLength(frame, 0))
+                    return new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CUSTOM_ERROR, "Invalid RLE frame");
+                return RC.RC_SUCCESS;
             }
         }
+
+        @Override
+        public RC run(byte[] data, long number) {
+            return coder.run(data);
+        }
+
+        @Override
+        public boolean hasMoreResults() {
+            return coder.hasMore();
+        }
+
+        @Override
+        public RC runMore() {
+            return coder.runMore();
+        }
+
+        @Override
+        public byte[] takeResult() {
+            // sizes of encoded and unframed decoded packages vary, so the pool would just add classes for them
+            byte[] result = mode == Mode.DECODE && isFramed ? buffer.toPackage(pool) : buffer.toByteArray();
+            buffer.reset();
+            return result;
+        }
+
+        @Override
+        public void reset() {
+            buffer.reset();
+        }
+
+        @Override
+        public String saveState() {
+            return coder.saveState();
+        }
+
+        @Override
+        public void restoreState(String state) {
+            coder.restoreState(state);
+        }
+    }
+
+    @Override
+    protected ICoder newCoder() {
+        return new RLECoder();
+    }
+
+    @Override
+    protected FrameSplitter newFrameSplitter(IMediator mediator, boolean isPooled) {
+        if (!isFramed || mode != Mode.DECODE)
+            return null;
+        return new FrameSplitter(mediator, pool, isPooled, RLEFrame.HEADER_SIZE,
+                (header, offset) -> RLEFrame.isValidHeader(header, offset) ? RLEFrame.getEncodedLength(header, offset) : -1,
+                "RLE frame");
+    }
+
+    // unframed decoder keeps the state between packages, so it can't be split into tasks
+    @Override
+    protected boolean hasStateBetweenPackages() {
+        return mode == Mode.DECODE && !isFramed;
+    }
+
+    @Override
+    protected void startJob() {
+        index = isIndexed ? new BlockIndex() : null;
+        nextIndexPart = 0;
+    }
+
+    @Override
+    protected byte[] toConsumer(byte[] out) {
+        return index != null ? addToIndex(out) : out;
+    }
+
+    // Called by consumer, so frames are added in their order. Returns the frames of the index parts
+    // one by one instead of the end of data, so every index frame is not larger than MAX_PACKAGE_SIZE.
+    private byte[] addToIndex(byte[] frame) {
+        if (frame != null) {
+            index.add(RLEFrame.getOriginalLength(frame, 0), frame.length);
+            return frame;
+        }
+        if (!rc.isSuccess() || isConsumerError)
+            return null;
+        if (nextIndexPart == index.partsNum()) {
+            index = null;
+            return null;
+        }
+        int part = nextIndexPart++;
+        int partSize = index.partByteSize(part);
+        byte[] indexFrame = new byte[RLEFrame.HEADER_SIZE + partSize];
+        RLEFrame.writeHeader(indexFrame, 0, RLEFrame.TYPE_INDEX, partSize, 0);
+        index.writePart(part, indexFrame, RLEFrame.HEADER_SIZE);
+        return indexFrame;
+    }
+
+    @Override
+    public boolean writesBlockIndex() {
+        return isIndexed;
+    }
+
+    // index of the frames before the checkpoint would be lost
+    @Override
+    public boolean canCheckpoint() {
+        return !isIndexed;
+    }
+
+    @Override
+    public boolean restoreState(String state) {
+        if (!canCheckpoint())
+            return false;
+        return super.restoreState(state);
     }
 
     @Override
@@ -296,7 +543,54 @@ public class RLEExecutor implements IExecutor {
         if (numOfThreads < 1)
             return RC.RC_EXECUTOR_CONFIG_SEMANTIC_ERROR;
 
-        if (numOfThreads > 1 && mode == Mode.DECODE) {
+        if (configReader.hasKey(ExecutorConfigGrammar.ConfigParams.FRAMED.toStr())) {
+            String framedStr = configReader.getParam(ExecutorConfigGrammar.ConfigParams.FRAMED.toStr());
+            if (framedStr.equalsIgnoreCase("true"))
+                isFramed = true;
+            else if (framedStr.equalsIgnoreCase("false"))
+                isFramed = false;
+            else
+                return RC.RC_EXECUTOR_CONFIG_SEMANTIC_ERROR;
+        }
+
+        if (configReader.hasKey(ExecutorConfigGrammar.ConfigParams.FORMAT.toStr())) {
+            String formatStr = configReader.getParam(ExecutorConfigGrammar.ConfigParams.FORMAT.toStr());
+            if (formatStr.equalsIgnoreCase(Format.BYTE.toStr()))
+                format = Format.BYTE;
+            else if (formatStr.equalsIgnoreCase(Format.VARINT.toStr()))
+                format = Format.VARINT;
+            else
+                return RC.RC_EXECUTOR_CONFIG_SEMANTIC_ERROR;
+        }
+
+        if (configReader.hasKey(ExecutorConfigGrammar.ConfigParams.ADAPTIVE.toStr())) {
+            String adaptiveStr = configReader.getParam(ExecutorConfigGrammar.ConfigParams.ADAPTIVE.toStr());
+            if (adaptiveStr.equalsIgnoreCase("true"))
+                isAdaptive = true;
+            else if (adaptiveStr.equalsIgnoreCase("false"))
+                isAdaptive = false;
+            else
+                return RC.RC_EXECUTOR_CONFIG_SEMANTIC_ERROR;
+            // raw packages are marked in frame headers
+            if (isAdaptive && !isFramed)
+                return new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CONFIG_SEMANTIC_ERROR, "Adaptive encoding needs FRAMED = true");
+        }
+
+        if (configReader.hasKey(ExecutorConfigGrammar.ConfigParams.INDEXED.toStr())) {
+            String indexedStr = configReader.getParam(ExecutorConfigGrammar.ConfigParams.INDEXED.toStr());
+            if (indexedStr.equalsIgnoreCase("true"))
+                isIndexed = true;
+            else if (indexedStr.equalsIgnoreCase("false"))
+                isIndexed = false;
+            else
+                return RC.RC_EXECUTOR_CONFIG_SEMANTIC_ERROR;
+            // blocks of the index are frames, the decoder just skips the index
+            if (isIndexed && (!isFramed || mode != Mode.ENCODE))
+                return new RC(RC.RCWho.EXECUTOR, RC.RCType.CODE_CONFIG_SEMANTIC_ERROR,
+                        "Block index needs FRAMED = true and MODE = encode");
+        }
+
+        if (numOfThreads > 1 && mode == Mode.DECODE && !isFramed) {
             // It's not always an error. We didn't specify warnings, so I just print it to console.
             System.out.println("Warning: if decoder is not next after encoder, it must work in one thread to avoid errors!");
         }
@@ -317,79 +611,4 @@ public class RLEExecutor implements IExecutor {
         return RC.RC_SUCCESS;
     }
 
-    @Override
-    public RC setProvider(IProvider iProvider) {
-        provider = iProvider;
-        boolean isEmptyIntersect = true;
-        TYPE intersectType = null;
-        outerLoop: for (TYPE myType : supportedTypes) {
-            for (TYPE providerType : iProvider.getOutputTypes()) {
-                if (myType == providerType) {
-                    intersectType = myType;
-                    isEmptyIntersect = false;
-                    break outerLoop;
-                }
-            }
-        }
-        if (isEmptyIntersect)
-            return RC.RC_EXECUTOR_TYPES_INTERSECTION_EMPTY_ERROR;
-
-        mediator = iProvider.getMediator(intersectType);
-
-        return RC.RC_SUCCESS;
-    }
-
-    @Override
-    public TYPE[] getOutputTypes() {
-        return supportedTypes;
-    }
-
-    @Override
-    public IMediator getMediator(TYPE type) {
-        if (type == TYPE.BYTE_ARRAY) {
-           return () ->  {
-                    synchronized (this) {
-                        byte[] out;
-                        do {
-                            out = packages.get(outPackageNumber);
-                        }
-                        while (out == null); // waiting package
-
-                        if (out.length == 0) {
-                            return null;
-                        }
-                        packages.remove(outPackageNumber);
-                        ++outPackageNumber;
-                        return out;
-                    }
-            };
-        }
-        else
-            return null;
-    }
-
-    @Override
-    public void runThreads() {
-        for (int i = 0; i < numOfThreads; ++i) {
-            executorsThreads.add(new Thread(new RLEExecutorRunnable(bufferSize, mode, mediator), "RLEExecutor/Thread" + i));
-            executorsThreads.get(i).start();
-        }
-    }
-
-    @Override
-    public void joinThreads() throws InterruptedException {
-        for (Thread executorThread : executorsThreads) {
-            executorThread.join();
-        }
-    }
-
-    @Override
-    public RC getRC() {
-        return rc;
-    }
-
-    @Override
-    public void reportError() {
-        isConsumerError = true;
-    }
 }
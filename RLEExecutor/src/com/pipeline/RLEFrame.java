@@ -0,0 +1,66 @@
+package com.pipeline;
+
+// Framed RLE format: every encoded package is prefixed with a header
+// [type: 1 byte][encoded length: 4 bytes][original length: 4 bytes] (big-endian),
+// so the decoder can find package boundaries without decoding and decode packages in parallel.
+// Payload of a raw frame is the original package, it's used when RLE doesn't make the package smaller.
+// Payload of an index frame is a part of BlockIndex of the frames before it, index frames are the last ones
+// and they give no data.
+final class RLEFrame {
+    static final int HEADER_SIZE = 9;
+    static final byte TYPE_RLE = 1;
+    static final byte TYPE_RAW = 2;
+    // RLE with varint lengths (RLEVarintEncoder)
+    static final byte TYPE_VARINT = 3;
+    static final byte TYPE_INDEX = 4;
+
+    private static final int ENCODED_LENGTH_OFFSET = 1;
+    private static final int ORIGINAL_LENGTH_OFFSET = 5;
+
+    private RLEFrame() {}
+
+    static void writeHeader(byte[] frame, int offset, byte type, int encodedLength, int originalLength) {
+        frame[offset] = type;
+        writeInt(frame, offset + ENCODED_LENGTH_OFFSET, encodedLength);
+        writeInt(frame, offset + ORIGINAL_LENGTH_OFFSET, originalLength);
+    }
+
+    static byte getType(byte[] frame, int offset) {
+        return frame[offset];
+    }
+
+    static int getEncodedLength(byte[] frame, int offset) {
+        return readInt(frame, offset + ENCODED_LENGTH_OFFSET);
+    }
+
+    static int getOriginalLength(byte[] frame, int offset) {
+        return readInt(frame, offset + ORIGINAL_LENGTH_OFFSET);
+    }
+
+    // Encoded length can't be more than the encoder gives for the original length
+    static boolean isValidHeader(byte[] frame, int offset) {
+        byte type = getType(frame, offset);
+        int encodedLength = getEncodedLength(frame, offset);
+        int originalLength = getOriginalLength(frame, offset);
+        if (encodedLength < 0 || originalLength < 0 || originalLength > FrameSplitter.MAX_PACKAGE_SIZE)
+            return false;
+        return type == TYPE_RLE && encodedLength <= RLEEncoder.maxEncodedSize(originalLength) ||
+                type == TYPE_VARINT && encodedLength <= RLEVarintEncoder.maxEncodedSize(originalLength) ||
+                type == TYPE_RAW && encodedLength == originalLength ||
+                type == TYPE_INDEX && originalLength == 0 && encodedLength <= FrameSplitter.MAX_PACKAGE_SIZE;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 |
+                (bytes[offset + 1] & 0xFF) << 16 |
+                (bytes[offset + 2] & 0xFF) << 8 |
+                bytes[offset + 3] & 0xFF;
+    }
+}
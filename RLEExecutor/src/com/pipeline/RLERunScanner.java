@@ -0,0 +1,49 @@
+package com.pipeline;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Searches runs of the same bytes comparing 8 bytes at once (SWAR).
+// Words are read in little-endian order, so the lowest byte of a word is the first byte in the array.
+final class RLERunScanner {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    private RLERunScanner() {}
+
+    static ByteBuffer wrap(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Returns the first j in [from, end) such that bytes[j] == bytes[j - 1], or end if there is no such j.
+    // from must be greater than 0.
+    static int findRepeat(byte[] bytes, ByteBuffer words, int from, int end) {
+        int j = from;
+        while (j + Long.BYTES <= end) {
+            // zero byte in diff means that byte is equal to the previous one
+            long diff = words.getLong(j) ^ words.getLong(j - 1);
+            long zeros = (diff - ONES) & ~diff & HIGHS;
+            if (zeros != 0)
+                return j + (Long.numberOfTrailingZeros(zeros) >>> 3);
+            j += Long.BYTES;
+        }
+        while (j < end && bytes[j] != bytes[j - 1])
+            ++j;
+        return j;
+    }
+
+    // Returns the first j in [from, end) such that bytes[j] != sym, or end if there is no such j
+    static int findRunEnd(byte[] bytes, ByteBuffer words, int from, int end, byte sym) {
+        long pattern = (sym & 0xFFL) * ONES;
+        int j = from;
+        while (j + Long.BYTES <= end) {
+            long diff = words.getLong(j) ^ pattern;
+            if (diff != 0)
+                return j + (Long.numberOfTrailingZeros(diff) >>> 3);
+            j += Long.BYTES;
+        }
+        while (j < end && bytes[j] == sym)
+            ++j;
+        return j;
+    }
+}
@@ -0,0 +1,65 @@
+package com.pipeline;
+
+import java.nio.ByteBuffer;
+
+// RLE encoding with lengths of any size.
+// Every token starts with an unsigned LEB128 varint (7 bits in a byte, the highest bit means that more bytes follow)
+// which is (length << 1 | 1) for a run followed by the repeated byte,
+// or (length << 1) for a literal followed by length bytes.
+final class RLEVarintEncoder {
+    // shorter runs are cheaper inside literals
+    private static final int MIN_RUN = 3;
+    static final int MAX_VARINT_SIZE = 5;
+
+    private RLEVarintEncoder() {}
+
+    // A run takes less than its bytes, and it pays back one byte of header of the literal before it.
+    // So only literals longer than 63 bytes (at most 5 bytes of header per 64 bytes) and the last literal add bytes.
+    static int maxEncodedSize(int length) {
+        return length + length / 16 + MAX_VARINT_SIZE;
+    }
+
+    // Encodes src[from, to) into dst starting with dstPos, dst must have at least maxEncodedSize(to - from) bytes.
+    // Returns position in dst after the encoded data.
+    static int encode(byte[] src, int from, int to, byte[] dst, int dstPos) {
+        ByteBuffer words = RLERunScanner.wrap(src);
+        int literalStart = from;
+        int i = from;
+        while (i < to) {
+            if (i + 1 < to && src[i + 1] == src[i]) {
+                int end = RLERunScanner.findRunEnd(src, words, i + 2, to, src[i]);
+                if (end - i >= MIN_RUN) {
+                    dstPos = writeLiteral(src, literalStart, i, dst, dstPos);
+                    dstPos = writeVarint(dst, dstPos, (long) (end - i) << 1 | 1);
+                    dst[dstPos++] = src[i];
+                    literalStart = end;
+                }
+                i = end;
+            }
+            else {
+                // the next run can start only with the first byte of a repeat
+                int j = RLERunScanner.findRepeat(src, words, i + 1, to);
+                i = j < to ? j - 1 : to;
+            }
+        }
+        return writeLiteral(src, literalStart, to, dst, dstPos);
+    }
+
+    private static int writeLiteral(byte[] src, int from, int to, byte[] dst, int dstPos) {
+        int length = to - from;
+        if (length == 0)
+            return dstPos;
+        dstPos = writeVarint(dst, dstPos, (long) length << 1);
+        System.arraycopy(src, from, dst, dstPos, length);
+        return dstPos + length;
+    }
+
+    private static int writeVarint(byte[] dst, int dstPos, long value) {
+        while (value >= 0x80) {
+            dst[dstPos++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        dst[dstPos++] = (byte) value;
+        return dstPos;
+    }
+}
@@ -0,0 +1,102 @@
+package com.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Size of packages of the reader chosen at runtime between the bounds.
+// The reader sees how long consumer codes a package and how full the queue is, and once in a period:
+// - packages are coded too fast, so their handoff costs much in comparison with their processing: size is doubled;
+// - packages are coded slowly while the queue is full, so consumer is slow on every package
+//   and big packages only take memory and make parallel coding coarse: size is halved.
+// Time of coding is the average latency of consumer's packages in the period. If consumer doesn't measure it,
+// the interval between takes of packages is used instead.
+// Sizes are the initial one multiplied or divided by powers of two, so the buffer pool keeps only a few sizes of arrays.
+// Size stays at the largest (smallest) such size within the bounds instead of being cut to the bound itself.
+final class PackageSizer {
+    private static final long PERIOD_NANOS = 50000000;
+    private static final long MIN_PACKAGE_TIME_NANOS = 200000;
+    private static final long MAX_PACKAGE_TIME_NANOS = 5000000;
+
+    private final int minSize;
+    private final int maxSize;
+    private final int queueSize;
+    private int size;
+
+    // taken packages of the period, they are counted by threads of consumer
+    private final AtomicLong taken = new AtomicLong();
+    private long periodStart;
+    private long queueSizesSum;
+    private int puts;
+    // metrics of consumer and their latency counters at the start of the period
+    private StageMetrics consumerMetrics;
+    private long latencySum;
+    private long latencyCount;
+
+    PackageSizer(int size, int minSize, int maxSize, int queueSize) {
+        this.size = size;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.queueSize = queueSize;
+        restart();
+    }
+
+    // New job starts with the size of the previous one, but with a new period
+    void restart() {
+        taken.set(0);
+        periodStart = System.nanoTime();
+        queueSizesSum = 0;
+        puts = 0;
+        startLatencyPeriod();
+    }
+
+    void setConsumerMetrics(StageMetrics consumerMetrics) {
+        this.consumerMetrics = consumerMetrics;
+        startLatencyPeriod();
+    }
+
+    private void startLatencyPeriod() {
+        if (consumerMetrics != null) {
+            latencySum = consumerMetrics.getLatencySumNanos();
+            latencyCount = consumerMetrics.getLatencyCount();
+        }
+    }
+
+    // Size of the next package read
+    int getSize() {
+        return size;
+    }
+
+    // Called by consumer for every package with data
+    void onTake() {
+        taken.incrementAndGet();
+    }
+
+    // Called by the reader after every put with the number of packages in the queue
+    void onPut(int packagesInQueue) {
+        queueSizesSum += packagesInQueue;
+        ++puts;
+        long now = System.nanoTime();
+        long time = now - periodStart;
+        if (time < PERIOD_NANOS)
+            return;
+
+        long packages = taken.getAndSet(0);
+        long packageTime = packages > 0 ? time / packages : Long.MAX_VALUE;
+        if (consumerMetrics != null) {
+            long count = consumerMetrics.getLatencyCount() - latencyCount;
+            if (count > 0)
+                packageTime = (consumerMetrics.getLatencySumNanos() - latencySum) / count;
+        }
+        // the queue is half full on average, so consumer can't keep up with the reader
+        boolean isQueueFull = queueSizesSum * 2 >= (long) puts * queueSize;
+        if (packageTime < MIN_PACKAGE_TIME_NANOS && size * 2L <= maxSize)
+            size *= 2;
+        // odd size can't be halved exactly
+        else if (packageTime > MAX_PACKAGE_TIME_NANOS && isQueueFull && size % 2 == 0 && size / 2 >= minSize)
+            size /= 2;
+
+        periodStart = now;
+        queueSizesSum = 0;
+        puts = 0;
+        startLatencyPeriod();
+    }
+}
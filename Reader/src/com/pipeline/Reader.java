@@ -2,20 +2,57 @@ package com.pipeline;
 
 import com.java_polytech.pipeline_interfaces.*;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Reader implements IReader, IMetricsSource, ICheckpointable, IPooledProvider, IConsumerMetricsAware {
+    private enum Mode {
+        // read input stream right into the packages
+        STREAM ("STREAM"),
+        // map input file to memory and get packages right from the mapping
+        MAPPED ("MAPPED"),
+        // several threads read packages of input file by positional reads
+        PARALLEL ("PARALLEL");
+        private final String str;
+
+        Mode(String str) {
+            this.str = str;
+        }
+        String toStr() {
+            return str;
+        }
+    }
+
+    // Size of the mapped part of input file, the whole file may not fit into address space
+    private static final int MAPPED_WINDOW_SIZE = 1 << 26;
 
-public class Reader implements IReader {
     InputStream input;
-    private byte[] buffer;
+    private Mode mode = Mode.STREAM;
+    private final BufferPool pool = BufferPool.getShared();
     private int bufferSize;
-    private ArrayBlockingQueue<byte[]> queue; //queue of packages with data
+    // size of packages is adapted at runtime if the bounds are given, BUFFER_SIZE is the initial size then
+    private PackageSizer sizer;
+    // metrics of the consumer if it collects them
+    private StageMetrics consumerMetrics;
+    private int queueSize;
+    private int numOfThreads = Runtime.getRuntime().availableProcessors();
+    // order of bytes in elements of CHAR_ARRAY and INT_ARRAY packages
+    private ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+    // packages with data, their positions in the ring are their numbers
+    private PackageRing ring;
     final private TYPE[] supportedTypes = { TYPE.BYTE_ARRAY, TYPE.CHAR_ARRAY, TYPE.INT_ARRAY };
     private RC rc = RC.RC_SUCCESS;
-    private boolean isErrInConsumer = false;
+    private volatile boolean isErrInConsumer = false;
+    private final StageMetrics metrics = new StageMetrics("Reader");
+    // packages are the bytes of input, so any offset is a checkpoint
+    private final StageCheckpoints checkpoints = new StageCheckpoints(true);
 
     @Override
     public RC getRC() {
@@ -25,53 +62,258 @@ public class Reader implements IReader {
     @Override
     public void reportError() {
         isErrInConsumer = true;
+        // reader blocked in put sees the error
+        if (ring != null)
+            ring.wakeUpAll();
+    }
+
+    @Override
+    public StageMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public StageCheckpoints getCheckpoints() {
+        return checkpoints;
+    }
+
+    // Latency of the consumer is the time of coding of a package, so the sizer uses it
+    @Override
+    public void setConsumerMetrics(StageMetrics consumerMetrics) {
+        this.consumerMetrics = consumerMetrics;
+        if (sizer != null)
+            sizer.setConsumerMetrics(consumerMetrics);
+    }
+
+    // Reader continues from the current position of input
+    @Override
+    public boolean restoreState(String state) {
+        return state == null;
     }
 
     @Override
     public RC setInputStream(InputStream inputStream) {
         input = inputStream;
+        // new input starts a new job, the end of the previous one must be forgotten
+        rc = RC.RC_SUCCESS;
+        isErrInConsumer = false;
+        ring = new PackageRing(queueSize);
+        if (sizer != null)
+            sizer.restart();
         return RC.RC_SUCCESS;
     }
 
     @Override
     public void run() {
-        int sizeOfData;
+        // only files can be mapped, other streams are read as usual
+        FileChannel channel = FileChannelStreams.channelOf(input);
+        if (mode == Mode.MAPPED && channel != null)
+            runMapped(channel);
+        else if (mode == Mode.PARALLEL && channel != null)
+            runParallel(channel);
+        else
+            runStream();
+    }
+
+    private void runMapped(FileChannel channel) {
+        // packages must not be split between windows
+        long windowSize = Long.max(1, MAPPED_WINDOW_SIZE / bufferSize) * bufferSize;
+        try {
+            long position = channel.position();
+            long size = channel.size();
+            while (position < size && !isErrInConsumer) {
+                long mapStart = System.nanoTime();
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Long.min(windowSize, size - position));
+                long mapTime = System.nanoTime() - mapStart;
+                while (window.hasRemaining() && !isErrInConsumer) {
+                    long start = System.nanoTime();
+                    // consumers get byte[] packages, so the package is copied from the mapping once,
+                    // while the stream mode copies it into the buffer of read() and then into the package
+                    byte[] out = allocate(Integer.min(getPackageSize(), window.remaining()));
+                    window.get(out);
+                    long readTime = System.nanoTime() - start;
+                    metrics.addInput(out.length, mapTime);
+                    metrics.addLatency(readTime);
+                    mapTime = 0;
+                    put(out);
+                }
+                position += window.capacity();
+            }
+            channel.position(position);
+        } catch (IOException e) {
+            rc = RC.RC_READER_FAILED_TO_READ;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rc = new RC(RC.RCWho.READER, RC.RCType.CODE_CUSTOM_ERROR, "Queue exception");
+        }
+
+        putEnd();
+    }
+
+    // Threads claim packages of the file one after another, so the regions being read are always
+    // near each other and the ring of packages is enough to put them into the queue in the order of the file
+    private void runParallel(FileChannel channel) {
+        long start;
+        long size;
         try {
-            sizeOfData = input.read(buffer, 0, bufferSize);
+            start = channel.position();
+            size = channel.size();
+        } catch (IOException e) {
+            rc = RC.RC_READER_FAILED_TO_READ;
+            start = size = 0;
+        }
+
+        PackageReorderBuffer packages = new PackageReorderBuffer(queueSize);
+        AtomicLong nextPackage = new AtomicLong();
+        ArrayList<WorkerThreads.Worker> readers = new ArrayList<>();
+        if (rc.isSuccess()) {
+            long regionStart = start;
+            long regionEnd = size;
+            for (int i = 0; i < numOfThreads; ++i)
+                readers.add(WorkerThreads.current().start(
+                        () -> readRegions(channel, regionStart, regionEnd, nextPackage, packages), "Reader/Thread" + i));
+        }
+
+        try {
+            byte[] out = rc.isSuccess() ? packages.take() : null;
+            while (out != null && !isErrInConsumer) {
+                put(out);
+                out = packages.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rc = new RC(RC.RCWho.READER, RC.RCType.CODE_CUSTOM_ERROR, "Queue exception");
+        }
+        // readers must not wait for slots which won't be freed
+        packages.abort();
+
+        try {
+            for (WorkerThreads.Worker reader : readers)
+                reader.join();
+            if (rc.isSuccess())
+                channel.position(size);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rc = new RC(RC.RCWho.READER, RC.RCType.CODE_CUSTOM_ERROR, "Could not join threads");
         } catch (IOException e) {
             rc = RC.RC_READER_FAILED_TO_READ;
+        }
+
+        putEnd();
+    }
+
+    private void readRegions(FileChannel channel, long start, long size, AtomicLong nextPackage,
+                             PackageReorderBuffer packages) {
+        while (true) {
+            long number = nextPackage.getAndIncrement();
+            long position = start + number * bufferSize;
             try {
-                queue.put(new byte[0]);
-            } catch (InterruptedException ex) {
-                System.out.println("The second exception while handling the first exception - can not handle!");
+                if (position >= size || isErrInConsumer || !packages.awaitSlot(number)) {
+                    packages.finish(number);
+                    return;
+                }
+
+                long readStart = System.nanoTime();
+                byte[] out = allocate((int) Long.min(bufferSize, size - position));
+                ByteBuffer target = ByteBuffer.wrap(out);
+                while (target.hasRemaining()) {
+                    // the file became shorter while it was read
+                    if (channel.read(target, position + target.position()) < 0)
+                        throw new EOFException();
+                }
+                long readTime = System.nanoTime() - readStart;
+                metrics.addInput(out.length, readTime);
+                metrics.addLatency(readTime);
+                packages.put(number, out);
+            } catch (IOException e) {
+                rc = RC.RC_READER_FAILED_TO_READ;
+                packages.finish(number);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rc = new RC(RC.RCWho.READER, RC.RCType.CODE_CUSTOM_ERROR, "Packages buffer exception");
+                packages.finish(number);
+                return;
             }
+        }
+    }
+
+    // Threads of consumer waiting for packages get the end
+    private void putEnd() {
+        ring.close();
+    }
+
+    // Consumer doesn't take packages after its error, so the reader doesn't wait for a free place then
+    private void put(byte[] out) throws InterruptedException {
+        long start = System.nanoTime();
+        if (!ring.put(out, () -> isErrInConsumer)) {
+            pool.release(out);
+            return;
+        }
+        metrics.addOutput(out.length, System.nanoTime() - start);
+        int packagesInQueue = ring.size();
+        metrics.addQueueSize(packagesInQueue);
+        if (sizer != null)
+            sizer.onPut(packagesInQueue);
+    }
+
+    private int getPackageSize() {
+        return sizer != null ? sizer.getSize() : bufferSize;
+    }
+
+    // Only packages of the full size repeat, so short reads and the tail of input are not taken from the pool:
+    // every new length would add a size class to the pool and push out the class of full packages
+    private byte[] allocate(int size) {
+        return size == getPackageSize() ? pool.get(size) : new byte[size];
+    }
+
+    // packages are read right into arrays from the pool, the array is copied only if it is not full
+    private byte[] toPackage(byte[] buffer, int sizeOfData) {
+        if (sizeOfData == buffer.length)
+            return buffer;
+        byte[] out = allocate(sizeOfData);
+        System.arraycopy(buffer, 0, out, 0, sizeOfData);
+        pool.release(buffer);
+        return out;
+    }
+
+    private void runStream() {
+        int sizeOfData;
+        byte[] buffer = pool.get(getPackageSize());
+        long start = System.nanoTime();
+        try {
+            sizeOfData = input.read(buffer, 0, buffer.length);
+        } catch (IOException e) {
+            rc = RC.RC_READER_FAILED_TO_READ;
+            putEnd();
             return;
         }
         while (sizeOfData > 0 && !isErrInConsumer) {
             try {
-                queue.put(Arrays.copyOf(buffer, sizeOfData));
-                sizeOfData = input.read(buffer, 0, bufferSize);
+                byte[] out = toPackage(buffer, sizeOfData);
+                long readTime = System.nanoTime() - start;
+                metrics.addInput(sizeOfData, readTime);
+                metrics.addLatency(readTime);
+                buffer = null;
+                put(out);
+                buffer = pool.get(getPackageSize());
+                start = System.nanoTime();
+                sizeOfData = input.read(buffer, 0, buffer.length);
             } catch (IOException e) {
                 rc = RC.RC_READER_FAILED_TO_READ;
-                try {
-                    queue.put(new byte[0]);
-                } catch (InterruptedException ex) {
-                    System.out.println("The second exception while handling the first exception - can not handle!");
-                }
+                putEnd();
                 return;
             }
             catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 rc = new RC(RC.RCWho.READER, RC.RCType.CODE_CUSTOM_ERROR, "Queue exception");
+                break;
             }
         }
+        pool.release(buffer);
 
-        try {
-            queue.put(new byte[0]);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            rc = new RC(RC.RCWho.READER, RC.RCType.CODE_CUSTOM_ERROR, "Queue exception");
-        }
+        putEnd();
     }
 
     @Override
@@ -102,14 +344,67 @@ public class Reader implements IReader {
 
         String queueSizeStr= configReader.getParam(ReaderConfigGrammar.ConfigParams.QUEUE_SIZE.toStr());
         try {
-            int queueSize = Integer.parseInt(queueSizeStr);
-            queue = new ArrayBlockingQueue<>(queueSize);
+            queueSize = Integer.parseInt(queueSizeStr);
         }
         catch (NumberFormatException e) {
             return RC.RC_READER_CONFIG_SEMANTIC_ERROR;
         }
+        if (queueSize <= 0)
+            return RC.RC_READER_CONFIG_SEMANTIC_ERROR;
+        ring = new PackageRing(queueSize);
+
+        if (configReader.hasKey(ReaderConfigGrammar.ConfigParams.MODE.toStr())) {
+            String modeStr = configReader.getParam(ReaderConfigGrammar.ConfigParams.MODE.toStr());
+            if (modeStr.equalsIgnoreCase(Mode.STREAM.toStr()))
+                mode = Mode.STREAM;
+            else if (modeStr.equalsIgnoreCase(Mode.MAPPED.toStr()))
+                mode = Mode.MAPPED;
+            else if (modeStr.equalsIgnoreCase(Mode.PARALLEL.toStr()))
+                mode = Mode.PARALLEL;
+            else
+                return RC.RC_READER_CONFIG_SEMANTIC_ERROR;
+        }
+
+        if (configReader.hasKey(ReaderConfigGrammar.ConfigParams.BYTE_ORDER.toStr())) {
+            String byteOrderStr = configReader.getParam(ReaderConfigGrammar.ConfigParams.BYTE_ORDER.toStr());
+            if (byteOrderStr.equalsIgnoreCase(ByteOrder.BIG_ENDIAN.toString()))
+                byteOrder = ByteOrder.BIG_ENDIAN;
+            else if (byteOrderStr.equalsIgnoreCase(ByteOrder.LITTLE_ENDIAN.toString()))
+                byteOrder = ByteOrder.LITTLE_ENDIAN;
+            else
+                return RC.RC_READER_CONFIG_SEMANTIC_ERROR;
+        }
+
+        if (configReader.hasKey(ReaderConfigGrammar.ConfigParams.NUM_OF_THREADS.toStr())) {
+            try {
+                numOfThreads = Integer.parseInt(configReader.getParam(ReaderConfigGrammar.ConfigParams.NUM_OF_THREADS.toStr()));
+            } catch (NumberFormatException e) {
+                return RC.RC_READER_CONFIG_SEMANTIC_ERROR;
+            }
+            if (numOfThreads < 1)
+                return RC.RC_READER_CONFIG_SEMANTIC_ERROR;
+        }
 
-        buffer = new byte[bufferSize];
+        boolean hasMinSize = configReader.hasKey(ReaderConfigGrammar.ConfigParams.MIN_BUFFER_SIZE.toStr());
+        boolean hasMaxSize = configReader.hasKey(ReaderConfigGrammar.ConfigParams.MAX_BUFFER_SIZE.toStr());
+        sizer = null;
+        if (hasMinSize || hasMaxSize) {
+            // threads of PARALLEL mode find packages in the file by their numbers, so packages have the same size
+            if (!hasMinSize || !hasMaxSize || mode == Mode.PARALLEL)
+                return RC.RC_READER_CONFIG_SEMANTIC_ERROR;
+            int minSize;
+            int maxSize;
+            try {
+                minSize = Integer.parseInt(configReader.getParam(ReaderConfigGrammar.ConfigParams.MIN_BUFFER_SIZE.toStr()));
+                maxSize = Integer.parseInt(configReader.getParam(ReaderConfigGrammar.ConfigParams.MAX_BUFFER_SIZE.toStr()));
+            } catch (NumberFormatException e) {
+                return RC.RC_READER_CONFIG_SEMANTIC_ERROR;
+            }
+            if (minSize <= 0 || minSize > bufferSize || maxSize < bufferSize)
+                return RC.RC_READER_CONFIG_SEMANTIC_ERROR;
+            sizer = new PackageSizer(bufferSize, minSize, maxSize, queueSize);
+            sizer.setConsumerMetrics(consumerMetrics);
+        }
 
         return RC.RC_SUCCESS;
     }
@@ -119,58 +414,118 @@ public class Reader implements IReader {
         return supportedTypes;
     }
 
-    @Override
-    public IMediator getMediator(TYPE type) {
-        if (type == TYPE.BYTE_ARRAY) {
-            return () -> {
-                try {
-                    byte[] out = queue.take();
-                    if (out.length > 0)
-                        return out;
-                    else {
-                        queue.put(new byte[0]);
-                        return null;
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    rc = new RC(RC.RCWho.READER, RC.RCType.CODE_CUSTOM_ERROR, "Queue exception");
+    // Returns null at the end of data, next calls return null too
+    private byte[] takePackage() {
+        return takeNumbered().data;
+    }
+
+    private PackageRing.Package takeNumbered() {
+        PackageRing.Package numbered = ring.take();
+        if (numbered.data != null && sizer != null)
+            sizer.onTake();
+        else if (numbered.data == null && Thread.currentThread().isInterrupted()) {
+            rc = new RC(RC.RCWho.READER, RC.RCType.CODE_CUSTOM_ERROR, "Queue exception");
+            // consumer won't take the rest of packages
+            isErrInConsumer = true;
+        }
+        return numbered;
+    }
+
+    // Threads of executors take packages without a lock, numbers keep the order of packages
+    private class ByteMediator implements IMediator, INumberedMediator {
+        @Override
+        public Object getData() {
+            return takePackage();
+        }
+
+        @Override
+        public PackageRing.Package getNumbered() {
+            return takeNumbered();
+        }
+    }
+
+    // Gives packages as arrays of elements of elementSize bytes in byteOrder, the arrays are taken from the pool.
+    // Bytes of an element split between packages are carried to the next package.
+    private abstract class TypedMediator implements IMediator {
+        private final int elementSize;
+        private final byte[] carry;
+        private int carrySize = 0;
+
+        TypedMediator(int elementSize) {
+            this.elementSize = elementSize;
+            carry = new byte[elementSize];
+        }
+
+        abstract Object allocate(int count);
+
+        // Bulk copy of count elements from bytes to out starting with index
+        abstract void get(ByteBuffer bytes, Object out, int index, int count);
+
+        @Override
+        public Object getData() {
+            while (true) {
+                byte[] bytes = takePackage();
+                if (bytes == null) {
+                    if (carrySize > 0 && rc.isSuccess())
+                        rc = new RC(RC.RCWho.READER, RC.RCType.CODE_CUSTOM_ERROR,
+                                "Size of input is not a multiple of " + elementSize + " bytes");
                     return null;
                 }
-            };
+
+                int count = (carrySize + bytes.length) / elementSize;
+                if (count == 0) {
+                    System.arraycopy(bytes, 0, carry, carrySize, bytes.length);
+                    carrySize += bytes.length;
+                    pool.release(bytes);
+                    continue;
+                }
+
+                Object out = allocate(count);
+                int index = 0;
+                int i = 0;
+                if (carrySize > 0) {
+                    i = elementSize - carrySize;
+                    System.arraycopy(bytes, 0, carry, carrySize, i);
+                    get(ByteBuffer.wrap(carry).order(byteOrder), out, 0, 1);
+                    index = 1;
+                }
+                get(ByteBuffer.wrap(bytes, i, bytes.length - i).order(byteOrder), out, index, count - index);
+                i += (count - index) * elementSize;
+                carrySize = bytes.length - i;
+                System.arraycopy(bytes, i, carry, 0, carrySize);
+                pool.release(bytes);
+                return out;
+            }
         }
+    }
+
+    @Override
+    public IMediator getMediator(TYPE type) {
+        if (type == TYPE.BYTE_ARRAY)
+            return new ByteMediator();
         else if (type == TYPE.CHAR_ARRAY) {
-            return () -> {
-                assert (bufferSize % 2 == 0);
-                try {
-                    byte[] out = queue.take();
-                    if (out.length == 0) {
-                        queue.put(new byte[0]);
-                        return null;
-                    }
-                    ByteBuffer b = ByteBuffer.wrap(out);
-                    return b.asCharBuffer().array();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    rc = new RC(RC.RCWho.READER, RC.RCType.CODE_CUSTOM_ERROR, "Queue exception");
-                   return null;
+            return new TypedMediator(Character.BYTES) {
+                @Override
+                Object allocate(int count) {
+                    return pool.getChars(count);
+                }
+
+                @Override
+                void get(ByteBuffer bytes, Object out, int index, int count) {
+                    bytes.asCharBuffer().get((char[]) out, index, count);
                 }
             };
         }
         else if (type == TYPE.INT_ARRAY) {
-            return () -> {
-                assert(bufferSize % 4 == 0);
-                try {
-                    byte[] out = queue.take();
-                    if (out.length == 0) {
-                        queue.put(new byte[0]);
-                        return null;
-                    }
-                    ByteBuffer b = ByteBuffer.wrap(out);
-                    return b.asIntBuffer().array();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    rc = new RC(RC.RCWho.READER, RC.RCType.CODE_CUSTOM_ERROR, "Queue exception");
-                    return null;
+            return new TypedMediator(Integer.BYTES) {
+                @Override
+                Object allocate(int count) {
+                    return pool.getInts(count);
+                }
+
+                @Override
+                void get(ByteBuffer bytes, Object out, int index, int count) {
+                    bytes.asIntBuffer().get((int[]) out, index, count);
                 }
             };
         }
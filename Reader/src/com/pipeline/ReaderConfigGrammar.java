@@ -3,7 +3,15 @@ package com.pipeline;
 public class ReaderConfigGrammar implements IConfigGrammar {
     enum ConfigParams {
         BUFFER_SIZE ("BUFFER_SIZE"),
-        QUEUE_SIZE("QUEUE_SIZE");
+        // bounds of the package size adapted at runtime, BUFFER_SIZE is the initial size
+        MIN_BUFFER_SIZE ("MIN_BUFFER_SIZE"),
+        MAX_BUFFER_SIZE ("MAX_BUFFER_SIZE"),
+        QUEUE_SIZE("QUEUE_SIZE"),
+        MODE("MODE"),
+        // threads of PARALLEL mode
+        NUM_OF_THREADS("NUM_OF_THREADS"),
+        // BIG_ENDIAN or LITTLE_ENDIAN, order of bytes in elements of CHAR_ARRAY and INT_ARRAY packages
+        BYTE_ORDER("BYTE_ORDER");
 
         private final String str;
         ConfigParams(String str) {
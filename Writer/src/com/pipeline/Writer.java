@@ -5,11 +5,57 @@ import com.java_polytech.pipeline_interfaces.*;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.IntBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+
+public class Writer implements IWriter, IMetricsSource, ICheckpointable {
+    private enum Mode {
+        // copy packages to the buffer and write it to output stream
+        STREAM ("STREAM"),
+        // write several packages to file channel at once by gathering write without copying,
+        // packages of providers which may reuse them are copied to the buffer
+        CHANNEL ("CHANNEL"),
+        // copy packages to one buffer while I/O threads write the others
+        ASYNC ("ASYNC");
+        private final String str;
+
+        Mode(String str) {
+            this.str = str;
+        }
+        String toStr() {
+            return str;
+        }
+    }
+
+    // Gathering write can't take too many buffers at once (IOV_MAX)
+    private static final int MAX_GATHERED_PACKAGES = 64;
+
+    // Buffer of ASYNC mode, offset in output is counted from the start of the job
+    private static final class Chunk {
+        final byte[] bytes;
+        int size = 0;
+        long offset = 0;
+
+        Chunk(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    // tells I/O thread to stop
+    private static final Chunk STOP = new Chunk(new byte[0]);
 
-public class Writer implements IWriter {
     OutputStream output;
+    private Mode mode = Mode.STREAM;
+    private final BufferPool pool = BufferPool.getShared();
+    // expected size of output file reserved before CHANNEL writes, 0 if unknown
+    private long preallocateSize = 0;
+    // I/O threads of ASYNC mode
+    private int numOfThreads = 1;
+    // order of bytes in elements of CHAR_ARRAY and INT_ARRAY packages
+    private ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+    private volatile boolean isIOFailed = false;
     private byte[] buffer;
     private int bufferSize;
     private int bufferIndex = 0;
@@ -17,16 +63,42 @@ public class Writer implements IWriter {
     IProvider provider;
     IMediator mediator;
     TYPE intersectType;
+    // packages of provider are pooled, so they are returned to the pool when they are written
+    private boolean isPooledProvider;
     RC rc = RC.RC_SUCCESS;
+    private final StageMetrics metrics = new StageMetrics("Writer");
+    private final StageCheckpoints checkpoints = new StageCheckpoints(true);
+    // bytes of packages got from provider in the current job
+    private long receivedSize = 0;
 
     @Override
     public RC getRC() {
         return rc;
     }
 
+    @Override
+    public StageMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public StageCheckpoints getCheckpoints() {
+        return checkpoints;
+    }
+
+    // Writer continues from the current position of output
+    @Override
+    public boolean restoreState(String state) {
+        return state == null;
+    }
+
     @Override
     public RC setOutputStream(OutputStream outputStream) {
         output = outputStream;
+        // new output starts a new job
+        bufferIndex = 0;
+        receivedSize = 0;
+        rc = RC.RC_SUCCESS;
         return RC.RC_SUCCESS;
     }
 
@@ -54,6 +126,51 @@ public class Writer implements IWriter {
 
         buffer = new byte[bufferSize];
 
+        if (configReader.hasKey(WriterConfigGrammar.ConfigParams.MODE.toStr())) {
+            String modeStr = configReader.getParam(WriterConfigGrammar.ConfigParams.MODE.toStr());
+            if (modeStr.equalsIgnoreCase(Mode.STREAM.toStr()))
+                mode = Mode.STREAM;
+            else if (modeStr.equalsIgnoreCase(Mode.CHANNEL.toStr()))
+                mode = Mode.CHANNEL;
+            else if (modeStr.equalsIgnoreCase(Mode.ASYNC.toStr()))
+                mode = Mode.ASYNC;
+            else
+                return RC.RC_WRITER_CONFIG_SEMANTIC_ERROR;
+        }
+
+        if (configReader.hasKey(WriterConfigGrammar.ConfigParams.BYTE_ORDER.toStr())) {
+            String byteOrderStr = configReader.getParam(WriterConfigGrammar.ConfigParams.BYTE_ORDER.toStr());
+            if (byteOrderStr.equalsIgnoreCase(ByteOrder.BIG_ENDIAN.toString()))
+                byteOrder = ByteOrder.BIG_ENDIAN;
+            else if (byteOrderStr.equalsIgnoreCase(ByteOrder.LITTLE_ENDIAN.toString()))
+                byteOrder = ByteOrder.LITTLE_ENDIAN;
+            else
+                return RC.RC_WRITER_CONFIG_SEMANTIC_ERROR;
+        }
+
+        if (configReader.hasKey(WriterConfigGrammar.ConfigParams.NUM_OF_THREADS.toStr())) {
+            try {
+                numOfThreads = Integer.parseInt(configReader.getParam(WriterConfigGrammar.ConfigParams.NUM_OF_THREADS.toStr()));
+            }
+            catch (NumberFormatException e) {
+                return RC.RC_WRITER_CONFIG_SEMANTIC_ERROR;
+            }
+            if (numOfThreads < 1)
+                return RC.RC_WRITER_CONFIG_SEMANTIC_ERROR;
+        }
+
+        if (configReader.hasKey(WriterConfigGrammar.ConfigParams.PREALLOCATE_SIZE.toStr())) {
+            String preallocateStr = configReader.getParam(WriterConfigGrammar.ConfigParams.PREALLOCATE_SIZE.toStr());
+            try {
+                preallocateSize = Long.parseLong(preallocateStr);
+            }
+            catch (NumberFormatException e) {
+                return RC.RC_WRITER_CONFIG_SEMANTIC_ERROR;
+            }
+            if (preallocateSize < 0)
+                return RC.RC_WRITER_CONFIG_SEMANTIC_ERROR;
+        }
+
         return RC.RC_SUCCESS;
     }
 
@@ -74,40 +191,416 @@ public class Writer implements IWriter {
             return RC.RC_EXECUTOR_TYPES_INTERSECTION_EMPTY_ERROR;
 
         mediator = iProvider.getMediator(intersectType);
+        isPooledProvider = iProvider instanceof IPooledProvider;
         return RC.RC_SUCCESS;
     }
 
+    // Typed packages are copied to pooled packages, so they always belong to the writer
+    private void releasePackage(byte[] bytes) {
+        if (ownsPackages())
+            pool.release(bytes);
+    }
+
+    private byte[] getNextPackage() {
+        long start = System.nanoTime();
+        byte[] bytesForOutput = getNextPackageData();
+        if (bytesForOutput != null)
+            metrics.addInput(bytesForOutput.length, System.nanoTime() - start);
+        return bytesForOutput;
+    }
+
+    private byte[] getNextPackageData() {
+        byte[] bytesForOutput = null;
+        switch (intersectType) {
+            case BYTE_ARRAY:
+                bytesForOutput = (byte[]) mediator.getData();
+                break;
+            // typed packages are copied by bulk put into pooled packages, and returned to the pool if they are pooled
+            case INT_ARRAY:
+                int[] intArr = (int[]) mediator.getData();
+                if (intArr != null) {
+                    bytesForOutput = pool.get(intArr.length * Integer.BYTES);
+                    ByteBuffer.wrap(bytesForOutput).order(byteOrder).asIntBuffer().put(intArr);
+                    if (isPooledProvider)
+                        pool.releaseInts(intArr);
+                }
+                break;
+            case CHAR_ARRAY:
+                char[] charArr = (char[]) mediator.getData();
+                if (charArr != null) {
+                    bytesForOutput = pool.get(charArr.length * Character.BYTES);
+                    ByteBuffer.wrap(bytesForOutput).order(byteOrder).asCharBuffer().put(charArr);
+                    if (isPooledProvider)
+                        pool.releaseChars(charArr);
+                }
+                break;
+        }
+        return bytesForOutput;
+    }
+
     @Override
     public void run() {
-        while (true) {
-            byte[] bytesForOutput = null;
-            switch (intersectType) {
-                case BYTE_ARRAY:
-                    bytesForOutput = (byte[]) mediator.getData();
+        // only files have channels, other streams are written as usual
+        FileChannel channel = FileChannelStreams.channelOf(output);
+        if (mode == Mode.CHANNEL && channel != null)
+            runChannel(channel);
+        else if (mode == Mode.ASYNC)
+            runAsync();
+        else
+            runStream();
+    }
+
+    // Packages are copied to one buffer while the others are written by I/O threads.
+    // Offset of every buffer is known when it's filled, so buffers of a file are written by positional writes
+    // of several threads at once. Other streams are written by one thread in order.
+    private void runAsync() {
+        FileChannel channel = FileChannelStreams.channelOf(output);
+        int threadsNum = channel != null ? numOfThreads : 1;
+        // one buffer is filled while every thread writes its own
+        int buffersNum = threadsNum + 1;
+        long start = 0;
+        if (channel != null) {
+            try {
+                start = channel.position();
+            } catch (IOException e) {
+                rc = RC.RC_WRITER_FAILED_TO_WRITE;
+                provider.reportError();
+                return;
+            }
+        }
+
+        ArrayBlockingQueue<Chunk> free = new ArrayBlockingQueue<>(buffersNum);
+        ArrayBlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(buffersNum + threadsNum);
+        for (int i = 0; i < buffersNum; ++i)
+            free.add(new Chunk(pool.get(bufferSize)));
+        isIOFailed = false;
+        ArrayList<WorkerThreads.Worker> writers = new ArrayList<>();
+        long outputStart = start;
+        for (int i = 0; i < threadsNum; ++i)
+            writers.add(WorkerThreads.current().start(() -> writeChunks(channel, outputStart, free, filled), "Writer/IO" + i));
+
+        long offset = 0;
+        boolean isStopped = false;
+        try {
+            Chunk chunk = free.take();
+            while (!isIOFailed) {
+                byte[] bytesForOutput = getNextPackage();
+                if (bytesForOutput == null)
                     break;
-                case INT_ARRAY:
-                    int[] intArr = (int[]) mediator.getData();
-                    if (intArr != null) {
-                        ByteBuffer byteBuffer = ByteBuffer.allocate(intArr.length * Integer.BYTES);
-                        IntBuffer intBuffer = byteBuffer.asIntBuffer();
-                        intBuffer.put(intArr);
-                        bytesForOutput = byteBuffer.array();
+                int i = 0;
+                while (i < bytesForOutput.length) {
+                    int count = Integer.min(bufferSize - chunk.size, bytesForOutput.length - i);
+                    System.arraycopy(bytesForOutput, i, chunk.bytes, chunk.size, count);
+                    i += count;
+                    chunk.size += count;
+                    if (chunk.size == bufferSize) {
+                        offset += chunk.size;
+                        chunk = submit(chunk, offset, free, filled);
                     }
+                }
+                releasePackage(bytesForOutput);
+
+                // checkpoint needs the whole package in output, so the buffers are written before it
+                receivedSize += bytesForOutput.length;
+                if (checkpoints.isCommitDue(receivedSize)) {
+                    if (chunk.size > 0) {
+                        offset += chunk.size;
+                        chunk = submit(chunk, offset, free, filled);
+                    }
+                    awaitWritten(free, buffersNum - 1);
+                    flush(channel);
+                    if (!isIOFailed)
+                        checkpoints.commit(receivedSize);
+                }
+            }
+
+            if (chunk.size > 0 && !isIOFailed) {
+                offset += chunk.size;
+                filled.put(chunk);
+            }
+            else
+                free.put(chunk);
+            for (int i = 0; i < threadsNum; ++i)
+                filled.put(STOP);
+            for (WorkerThreads.Worker writer : writers)
+                writer.join();
+            isStopped = true;
+            // positional writes don't move the position of the file
+            if (channel != null && !isIOFailed)
+                channel.position(start + offset);
+        } catch (IOException e) {
+            isIOFailed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rc = new RC(RC.RCWho.WRITER, RC.RCType.CODE_CUSTOM_ERROR, "Buffers queue exception");
+            provider.reportError();
+            return;
+        } finally {
+            if (!isStopped)
+                abortWriters(filled, writers);
+        }
+
+        for (Chunk chunk : free)
+            pool.release(chunk.bytes);
+        if (isIOFailed) {
+            rc = RC.RC_WRITER_FAILED_TO_WRITE;
+            provider.reportError();
+        }
+    }
+
+    private void flush(FileChannel channel) {
+        if (channel != null || isIOFailed)
+            return;
+        try {
+            output.flush();
+        } catch (IOException e) {
+            isIOFailed = true;
+        }
+    }
+
+    // Stops I/O threads after the writer is interrupted, otherwise they wait for buffers forever.
+    // Buffers in the queue are not written, and the queue always has place for STOP of every thread.
+    private void abortWriters(ArrayBlockingQueue<Chunk> filled, ArrayList<WorkerThreads.Worker> writers) {
+        isIOFailed = true;
+        for (int i = 0; i < writers.size(); ++i)
+            filled.offer(STOP);
+        // the writer is interrupted, but it must not return before its threads
+        boolean isInterrupted = Thread.interrupted();
+        for (WorkerThreads.Worker writer : writers) {
+            while (true) {
+                try {
+                    writer.join();
                     break;
-                case CHAR_ARRAY:
-                    char[] charArr = (char[]) mediator.getData();
-                    if (charArr != null) {
-                        ByteBuffer byteBuffer = ByteBuffer.allocate(charArr.length * Character.BYTES);
-                        CharBuffer charBuffer = byteBuffer.asCharBuffer();
-                        charBuffer.put(charArr);
-                        bytesForOutput = byteBuffer.array();
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                }
+            }
+        }
+        if (isInterrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    // Gives the filled buffer to I/O threads and returns the next free one
+    private Chunk submit(Chunk chunk, long offset, ArrayBlockingQueue<Chunk> free,
+                         ArrayBlockingQueue<Chunk> filled) throws InterruptedException {
+        filled.put(chunk);
+        Chunk next = free.take();
+        next.size = 0;
+        next.offset = offset;
+        return next;
+    }
+
+    // Waits until I/O threads return all buffers except the one being filled
+    private void awaitWritten(ArrayBlockingQueue<Chunk> free, int buffersNum) throws InterruptedException {
+        ArrayList<Chunk> written = new ArrayList<>();
+        for (int i = 0; i < buffersNum; ++i)
+            written.add(free.take());
+        free.addAll(written);
+    }
+
+    private void writeChunks(FileChannel channel, long start, ArrayBlockingQueue<Chunk> free,
+                             ArrayBlockingQueue<Chunk> filled) {
+        try {
+            while (true) {
+                Chunk chunk = filled.take();
+                if (chunk == STOP)
+                    return;
+                // after an error the buffers are only returned, so the filling thread never waits forever
+                try {
+                    if (!isIOFailed) {
+                        long writeStart = System.nanoTime();
+                        if (channel != null) {
+                            ByteBuffer bytes = ByteBuffer.wrap(chunk.bytes, 0, chunk.size);
+                            while (bytes.hasRemaining())
+                                channel.write(bytes, start + chunk.offset + bytes.position());
+                        }
+                        else
+                            output.write(chunk.bytes, 0, chunk.size);
+                        long writeTime = System.nanoTime() - writeStart;
+                        metrics.addOutput(chunk.size, writeTime);
+                        metrics.addLatency(writeTime);
                     }
+                } catch (Throwable e) {
+                    // any failure of the thread fails the job, and the thread keeps returning buffers
+                    isIOFailed = true;
+                } finally {
+                    // free queue has place for every buffer, so it never waits
+                    free.add(chunk);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            isIOFailed = true;
+        }
+    }
+
+    // Packages of a pooled provider and typed packages copied by the writer are not used by anyone else,
+    // other providers may reuse their array on the next call, so their packages are copied before writing
+    private boolean ownsPackages() {
+        return isPooledProvider || intersectType != TYPE.BYTE_ARRAY;
+    }
+
+    private void runChannel(FileChannel channel) {
+        long start;
+        boolean isPreallocated;
+        try {
+            start = channel.position();
+            isPreallocated = preallocate(channel, start);
+        } catch (IOException e) {
+            rc = RC.RC_WRITER_FAILED_TO_WRITE;
+            provider.reportError();
+            return;
+        }
+
+        try {
+            if (ownsPackages())
+                runGathering(channel);
+            else
+                runCoalescing(channel);
+        } catch (IOException e) {
+            rc = RC.RC_WRITER_FAILED_TO_WRITE;
+            provider.reportError();
+        } finally {
+            // output may be less than expected or stopped by an error, the reserved tail is not left in the file
+            if (isPreallocated) {
+                try {
+                    channel.truncate(channel.position());
+                } catch (IOException e) {
+                    if (rc.isSuccess()) {
+                        rc = RC.RC_WRITER_FAILED_TO_WRITE;
+                        provider.reportError();
+                    }
+                }
+            }
+        }
+    }
+
+    // Reserves blocks of the expected output by writing zeros, so the file is not fragmented by the later writes.
+    // Only the length of the file is not enough, because it makes a sparse file without blocks.
+    private boolean preallocate(FileChannel channel, long start) throws IOException {
+        long end = start + preallocateSize;
+        long position = Long.max(start, channel.size());
+        if (preallocateSize == 0 || position >= end)
+            return false;
+
+        long size = position;
+        ByteBuffer zeros = ByteBuffer.allocate((int) Long.min(bufferSize, end - position));
+        try {
+            while (position < end) {
+                zeros.clear();
+                zeros.limit((int) Long.min(zeros.capacity(), end - position));
+                while (zeros.hasRemaining())
+                    position += channel.write(zeros, position);
+            }
+        } catch (IOException e) {
+            // the part which was reserved is not left in the file
+            channel.truncate(size);
+            throw e;
+        }
+        return true;
+    }
+
+    private void runGathering(FileChannel channel) throws IOException {
+        ByteBuffer[] gathered = new ByteBuffer[MAX_GATHERED_PACKAGES];
+        int gatheredNum = 0;
+        long gatheredSize = 0;
+        try {
+            while (true) {
+                byte[] bytesForOutput = getNextPackage();
+                if (bytesForOutput != null && bytesForOutput.length > 0) {
+                    gathered[gatheredNum++] = ByteBuffer.wrap(bytesForOutput);
+                    gatheredSize += bytesForOutput.length;
+                }
+
+                // packages are accumulated until they fill the buffer, and then they are written by one call
+                if (bytesForOutput == null || gatheredNum == gathered.length || gatheredSize >= bufferSize) {
+                    long writeStart = System.nanoTime();
+                    long size = gatheredSize;
+                    while (gatheredSize > 0)
+                        gatheredSize -= channel.write(gathered, 0, gatheredNum);
+                    long writeTime = System.nanoTime() - writeStart;
+                    if (size > 0) {
+                        metrics.addOutput(size, writeTime);
+                        metrics.addLatency(writeTime);
+                    }
+                    // all gathered packages are written
+                    receivedSize += size;
+                    if (checkpoints.isCommitDue(receivedSize))
+                        checkpoints.commit(receivedSize);
+                    for (int i = 0; i < gatheredNum; ++i) {
+                        releasePackage(gathered[i].array());
+                        gathered[i] = null;
+                    }
+                    gatheredNum = 0;
+                }
+
+                if (bytesForOutput == null)
                     break;
             }
+        } finally {
+            // packages which were not written because of an error
+            for (int i = 0; i < gatheredNum; ++i)
+                releasePackage(gathered[i].array());
+        }
+    }
+
+    // Packages are copied to the buffer as in STREAM mode, and the buffer is written to the channel
+    private void runCoalescing(FileChannel channel) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(buffer);
+        while (true) {
+            byte[] bytesForOutput = getNextPackage();
+            if (bytesForOutput == null) {
+                if (bufferIndex != 0)
+                    writeBuffer(channel, bytes);
+                return;
+            }
+            int i = 0;
+            while (i < bytesForOutput.length) {
+                int count = Integer.min(bufferSize - bufferIndex, bytesForOutput.length - i);
+                System.arraycopy(bytesForOutput, i, buffer, bufferIndex, count);
+                i += count;
+                bufferIndex += count;
+                if (bufferIndex == bufferSize)
+                    writeBuffer(channel, bytes);
+            }
+
+            // checkpoint needs the whole package in output, so the buffer is written before it
+            receivedSize += bytesForOutput.length;
+            if (checkpoints.isCommitDue(receivedSize)) {
+                if (bufferIndex > 0)
+                    writeBuffer(channel, bytes);
+                checkpoints.commit(receivedSize);
+            }
+        }
+    }
+
+    private void writeBuffer(FileChannel channel, ByteBuffer bytes) throws IOException {
+        long start = System.nanoTime();
+        bytes.clear();
+        bytes.limit(bufferIndex);
+        while (bytes.hasRemaining())
+            channel.write(bytes);
+        long writeTime = System.nanoTime() - start;
+        metrics.addOutput(bufferIndex, writeTime);
+        metrics.addLatency(writeTime);
+        bufferIndex = 0;
+    }
+
+    private void write(int size) throws IOException {
+        long start = System.nanoTime();
+        output.write(buffer, 0, size);
+        long writeTime = System.nanoTime() - start;
+        metrics.addOutput(size, writeTime);
+        metrics.addLatency(writeTime);
+    }
+
+    private void runStream() {
+        while (true) {
+            byte[] bytesForOutput = getNextPackage();
             if (bytesForOutput == null) {
                 if (bufferIndex != 0) {
                     try {
-                        output.write(buffer, 0, bufferIndex);
+                        write(bufferIndex);
                     } catch (IOException e) {
                         rc = RC.RC_WRITER_FAILED_TO_WRITE;
                         provider.reportError();
@@ -118,10 +611,13 @@ public class Writer implements IWriter {
             }
             int i = 0;
             while (i < bytesForOutput.length) {
-                buffer[bufferIndex++] = bytesForOutput[i++];
+                int count = Integer.min(bufferSize - bufferIndex, bytesForOutput.length - i);
+                System.arraycopy(bytesForOutput, i, buffer, bufferIndex, count);
+                i += count;
+                bufferIndex += count;
                 if (bufferIndex == bufferSize) {
                     try {
-                        output.write(buffer);
+                        write(bufferSize);
                     } catch (IOException e) {
                         rc = RC.RC_WRITER_FAILED_TO_WRITE;
                         provider.reportError();
@@ -130,6 +626,23 @@ public class Writer implements IWriter {
                     bufferIndex = 0;
                 }
             }
+            releasePackage(bytesForOutput);
+
+            // checkpoint needs the whole package in output, so the buffer is written before it
+            receivedSize += bytesForOutput.length;
+            if (checkpoints.isCommitDue(receivedSize)) {
+                try {
+                    if (bufferIndex > 0)
+                        write(bufferIndex);
+                    output.flush();
+                } catch (IOException e) {
+                    rc = RC.RC_WRITER_FAILED_TO_WRITE;
+                    provider.reportError();
+                    return;
+                }
+                bufferIndex = 0;
+                checkpoints.commit(receivedSize);
+            }
         }
     }
 }
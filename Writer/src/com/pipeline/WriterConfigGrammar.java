@@ -4,7 +4,13 @@ import com.pipeline.IConfigGrammar;
 
 public class WriterConfigGrammar implements IConfigGrammar {
     enum ConfigParams {
-        BUFFER_SIZE ("BUFFER_SIZE");
+        BUFFER_SIZE ("BUFFER_SIZE"),
+        MODE ("MODE"),
+        // I/O threads of ASYNC mode
+        NUM_OF_THREADS ("NUM_OF_THREADS"),
+        // BIG_ENDIAN or LITTLE_ENDIAN, order of bytes in elements of CHAR_ARRAY and INT_ARRAY packages
+        BYTE_ORDER ("BYTE_ORDER"),
+        PREALLOCATE_SIZE ("PREALLOCATE_SIZE");
 
         private final String str;
         ConfigParams(String str) {